@@ -0,0 +1,46 @@
+package ru.hogwarts.school.archive;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Forward-only reader over the regular files of an archive. Entries are read straight from the
+ * underlying stream, so an archive of any size needs no more memory than one read buffer.
+ */
+public interface ArchiveReader extends Closeable {
+
+    /**
+     * Advances to the next regular file, skipping whatever is left of the current one.
+     *
+     * @return the entry name, or {@code null} at the end of the archive
+     */
+    String nextEntry() throws IOException;
+
+    /**
+     * Bytes of the current entry. Closing the returned stream does not close the archive.
+     */
+    InputStream entryStream();
+
+    /**
+     * Picks the reader by file extension: {@code .zip}, {@code .tar}, {@code .tar.gz} or {@code .tgz}.
+     *
+     * @throws IllegalArgumentException if the extension is none of those
+     */
+    static ArchiveReader open(String fileName, InputStream in) throws IOException {
+        String name = fileName == null ? "" : fileName.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".zip")) {
+            return new ZipArchiveReader(in);
+        }
+        if (name.endsWith(".tar")) {
+            return new TarArchiveReader(new BufferedInputStream(in));
+        }
+        if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+            return new TarArchiveReader(new BufferedInputStream(new GZIPInputStream(in)));
+        }
+        throw new IllegalArgumentException("Unsupported archive type: " + fileName);
+    }
+}
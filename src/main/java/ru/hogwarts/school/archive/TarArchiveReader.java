@@ -0,0 +1,145 @@
+package ru.hogwarts.school.archive;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal ustar reader: regular files, GNU long names, and pax headers (skipped) are enough
+ * for archives made by GNU tar, bsdtar and most libraries.
+ */
+class TarArchiveReader implements ArchiveReader {
+
+    private static final int BLOCK_SIZE = 512;
+
+    private final InputStream in;
+    private final byte[] header = new byte[BLOCK_SIZE];
+
+    /** Bytes of the current entry not read yet, and the padding after them. */
+    private long remaining;
+    private long padding;
+
+    TarArchiveReader(InputStream in) {
+        this.in = in;
+    }
+
+    @Override
+    public String nextEntry() throws IOException {
+        String longName = null;
+        while (true) {
+            skipFully(remaining + padding);
+            remaining = 0;
+            padding = 0;
+            if (!readBlock()) {
+                return null;
+            }
+            long size = parseOctal(124, 12);
+            byte type = header[156];
+            remaining = size;
+            padding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+
+            if (type == 'L') {
+                byte[] name = in.readNBytes((int) size);
+                remaining -= name.length;
+                longName = cString(name, 0, name.length);
+                continue;
+            }
+            if (type != '0' && type != 0) {
+                // directories, links and pax/extended headers
+                continue;
+            }
+            if (longName != null) {
+                return longName;
+            }
+            String name = cString(header, 0, 100);
+            String prefix = cString(header, 345, 155);
+            return prefix.isEmpty() ? name : prefix + "/" + name;
+        }
+    }
+
+    @Override
+    public InputStream entryStream() {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int b = in.read();
+                if (b < 0) {
+                    throw new EOFException("Truncated tar entry");
+                }
+                remaining--;
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int n = in.read(b, off, (int) Math.min(len, remaining));
+                if (n < 0) {
+                    throw new EOFException("Truncated tar entry");
+                }
+                remaining -= n;
+                return n;
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Reads the next header; an all-zero block marks the end of the archive.
+     */
+    private boolean readBlock() throws IOException {
+        int n = in.readNBytes(header, 0, BLOCK_SIZE);
+        if (n == 0) {
+            return false;
+        }
+        if (n < BLOCK_SIZE) {
+            throw new EOFException("Truncated tar header");
+        }
+        for (byte b : header) {
+            if (b != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long parseOctal(int offset, int length) throws IOException {
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = header[i];
+            if (b == 0 || b == ' ') {
+                if (value > 0) {
+                    break;
+                }
+                continue;
+            }
+            if (b < '0' || b > '7') {
+                throw new IOException("Invalid tar header");
+            }
+            value = value * 8 + (b - '0');
+        }
+        return value;
+    }
+
+    private void skipFully(long count) throws IOException {
+        in.skipNBytes(count);
+    }
+
+    private static String cString(byte[] bytes, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && bytes[end] != 0) {
+            end++;
+        }
+        return new String(bytes, offset, end - offset, StandardCharsets.UTF_8);
+    }
+}
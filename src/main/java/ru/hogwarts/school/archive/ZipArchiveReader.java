@@ -0,0 +1,42 @@
+package ru.hogwarts.school.archive;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+class ZipArchiveReader implements ArchiveReader {
+
+    private final ZipInputStream zip;
+
+    ZipArchiveReader(InputStream in) {
+        this.zip = new ZipInputStream(in);
+    }
+
+    @Override
+    public String nextEntry() throws IOException {
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (!entry.isDirectory()) {
+                return entry.getName();
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public InputStream entryStream() {
+        return new FilterInputStream(zip) {
+            @Override
+            public void close() {
+                // the next getNextEntry() closes the entry
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        zip.close();
+    }
+}
@@ -0,0 +1,123 @@
+package ru.hogwarts.school.cache;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Thread-safe LRU cache bounded by the total weight of its values (e.g. bytes).
+ * A value heavier than the whole budget is never cached. With a time to live, an entry
+ * older than that counts as a miss and is dropped when it is next looked up.
+ */
+public class BoundedCache<K, V> {
+
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+    private final long timeToLiveNanos;
+    private final LongSupplier nanoClock;
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long residentWeight;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long generation;
+
+    private record Entry<V>(V value, long weight, long cachedAt) {
+    }
+
+    public BoundedCache(long maxWeight, ToLongFunction<V> weigher) {
+        this(maxWeight, weigher, null);
+    }
+
+    /**
+     * @param timeToLive how long an entry stays valid after it is put, or {@code null} for no limit
+     */
+    public BoundedCache(long maxWeight, ToLongFunction<V> weigher, Duration timeToLive) {
+        this(maxWeight, weigher, timeToLive, System::nanoTime);
+    }
+
+    BoundedCache(long maxWeight, ToLongFunction<V> weigher, Duration timeToLive, LongSupplier nanoClock) {
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.timeToLiveNanos = timeToLive == null ? Long.MAX_VALUE : timeToLive.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null && nanoClock.getAsLong() - entry.cachedAt() >= timeToLiveNanos) {
+            remove(key);
+            expirations++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value();
+    }
+
+    public synchronized void put(K key, V value) {
+        long weight = weigher.applyAsLong(value);
+        remove(key);
+        if (weight > maxWeight) {
+            return;
+        }
+        entries.put(key, new Entry<>(value, weight, nanoClock.getAsLong()));
+        residentWeight += weight;
+        evictToBudget();
+    }
+
+    /**
+     * Caches the value only if nothing was invalidated since {@link #generation()} returned
+     * {@code expectedGeneration}, so a value loaded before an invalidation cannot be put back afterwards.
+     */
+    public synchronized void putIfGeneration(K key, V value, long expectedGeneration) {
+        if (generation == expectedGeneration) {
+            put(key, value);
+        }
+    }
+
+    public synchronized long generation() {
+        return generation;
+    }
+
+    public synchronized void invalidate(K key) {
+        generation++;
+        remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+        residentWeight = 0;
+    }
+
+    public synchronized CacheStats stats() {
+        long requests = hits + misses;
+        double hitRate = requests == 0 ? 0.0 : (double) hits / requests;
+        return new CacheStats(hits, misses, hitRate, evictions, expirations, entries.size(), residentWeight, maxWeight);
+    }
+
+    private void remove(K key) {
+        Entry<V> removed = entries.remove(key);
+        if (removed != null) {
+            residentWeight -= removed.weight();
+        }
+    }
+
+    private void evictToBudget() {
+        Iterator<Map.Entry<K, Entry<V>>> eldest = entries.entrySet().iterator();
+        while (residentWeight > maxWeight && eldest.hasNext()) {
+            residentWeight -= eldest.next().getValue().weight();
+            eldest.remove();
+            evictions++;
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package ru.hogwarts.school.cache;
+
+public record CacheStats(long hits, long misses, double hitRate, long evictions, long expirations, long entries,
+                         long residentWeight, long maxWeight) {
+}
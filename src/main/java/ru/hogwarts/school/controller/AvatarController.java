@@ -1,31 +1,57 @@
 package ru.hogwarts.school.controller;
 
 import jakarta.persistence.EntityNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.springframework.data.domain.Page;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import ru.hogwarts.school.cache.CacheStats;
+import ru.hogwarts.school.dto.AvatarImportReport;
+import ru.hogwarts.school.dto.AvatarPreview;
+import ru.hogwarts.school.dto.AvatarSummary;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.dto.RegenerationProgress;
 import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.AvatarUploadStatus;
+import ru.hogwarts.school.service.AvatarImportService;
+import ru.hogwarts.school.service.AvatarRegenerationService;
 import ru.hogwarts.school.service.AvatarService;
+import ru.hogwarts.school.storage.BlobRegion;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("avatar")
 public class AvatarController {
+    private static final String SENDFILE_SUPPORT_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
     private final AvatarService avatarService;
+    private final AvatarImportService avatarImportService;
+    private final AvatarRegenerationService avatarRegenerationService;
 
-    public AvatarController(AvatarService avatarService) {
+    public AvatarController(AvatarService avatarService, AvatarImportService avatarImportService,
+                            AvatarRegenerationService avatarRegenerationService) {
         this.avatarService = avatarService;
+        this.avatarImportService = avatarImportService;
+        this.avatarRegenerationService = avatarRegenerationService;
     }
 
     @PostMapping(value = "/{id}/avatar", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
@@ -34,47 +60,198 @@ public class AvatarController {
             return ResponseEntity.badRequest().body("File is too big");
         }
         try {
-            avatarService.uploadAvatar(id, avatar);
-            return ResponseEntity.ok().build();
+            AvatarUploadStatus status = avatarService.uploadAvatar(id, avatar);
+            return ResponseEntity.accepted().body(status.name());
         } catch (EntityNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Student not found");
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Too many avatars in processing, try again later");
         } catch (IOException e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Failed to upload avatar");
         }
 
     }
 
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<AvatarImportReport> importAvatars(@RequestParam MultipartFile archive) throws IOException {
+        try {
+            return ResponseEntity.ok(avatarImportService.importArchive(archive));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping(value = "/regeneration")
+    public ResponseEntity<RegenerationProgress> startRegeneration() {
+        RegenerationProgress progress = avatarRegenerationService.start();
+        if (progress == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(avatarRegenerationService.getProgress());
+        }
+        return ResponseEntity.accepted().body(progress);
+    }
+
+    @GetMapping(value = "/regeneration")
+    public ResponseEntity<RegenerationProgress> getRegenerationProgress() {
+        RegenerationProgress progress = avatarRegenerationService.getProgress();
+        if (progress == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(progress);
+    }
+
+    @DeleteMapping(value = "/regeneration")
+    public ResponseEntity<Void> cancelRegeneration() {
+        if (!avatarRegenerationService.cancel()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.accepted().build();
+    }
+
+    @DeleteMapping(value = "/{id}/avatar")
+    public ResponseEntity<Void> deleteAvatar(@PathVariable Long id) {
+        if (!avatarService.deleteAvatar(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok().build();
+    }
+
+    @GetMapping(value = "/{id}/avatar/status")
+    public ResponseEntity<AvatarUploadStatus> getUploadStatus(@PathVariable Long id) {
+        AvatarUploadStatus status = avatarService.getUploadStatus(id);
+        if (status == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(status);
+    }
+
     @GetMapping(value = "/{id}/avatar/preview")
-    public ResponseEntity<byte[]> downloadAvatar(@PathVariable Long id) {
-        Avatar avatar = avatarService.findAvatar(id);
+    public ResponseEntity<byte[]> downloadAvatar(@PathVariable Long id,
+                                                 @RequestParam(value = "w", required = false) Integer width,
+                                                 WebRequest webRequest) throws IOException {
+        AvatarPreview preview = avatarService.findPreview(id, width);
+        if (preview == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (webRequest.checkNotModified("\"" + preview.key() + "\"")) {
+            return null;
+        }
 
         HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.parseMediaType(avatar.getMediaType()));
-        headers.setContentLength(avatar.getData().length);
+        headers.setContentType(MediaType.parseMediaType(preview.mediaType()));
+        headers.setContentLength(preview.data().length);
+
+        return ResponseEntity.status(HttpStatus.OK).headers(headers).body(preview.data());
+    }
 
-        return ResponseEntity.status(HttpStatus.OK).headers(headers).body(avatar.getData());
+    @GetMapping(value = "preview-cache/stats")
+    public ResponseEntity<CacheStats> getPreviewCacheStats() {
+        return ResponseEntity.ok(avatarService.getPreviewCacheStats());
     }
 
     @GetMapping(value = "/{id}/avatar")
-    public void downloadAvatar(@PathVariable Long id, HttpServletResponse response) throws IOException {
+    public void downloadAvatar(@PathVariable Long id, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
         Avatar avatar = avatarService.findAvatar(id);
+        if (avatar.getContentHash() == null) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        BlobRegion region;
+        try {
+            region = avatarService.locateOriginal(avatar);
+        } catch (NoSuchFileException e) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return;
+        }
 
-        Path path = Path.of(avatar.getFilepath());
+        String etag = "\"" + avatar.getContentHash() + "\"";
+        long lastModified = avatar.getUpdatedAt() == null ? -1 : avatar.getUpdatedAt().toEpochMilli();
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePublic().getHeaderValue());
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+
+        long fileSize = avatar.getFileSize();
+        long start = 0;
+        long end = fileSize - 1;
+        HttpRange range = singleRange(request, etag, lastModified);
+        if (range != null) {
+            start = range.getRangeStart(fileSize);
+            end = range.getRangeEnd(fileSize);
+            if (start >= fileSize || start > end) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + fileSize);
+                return;
+            }
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + fileSize);
+        } else {
+            response.setStatus(HttpStatus.OK.value());
+        }
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setContentType(avatar.getMediaType());
+        response.setContentLengthLong(end - start + 1);
 
-        try (InputStream is = Files.newInputStream(path);
-             OutputStream os = response.getOutputStream()) {
-            response.setStatus(200);
-            response.setContentType(avatar.getMediaType());
-            response.setContentLength((int) avatar.getFileSize());
-            is.transferTo(os);
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTR))) {
+            // Tomcat hands the region to the kernel (sendfile) once the handler returns
+            request.setAttribute(SENDFILE_FILENAME_ATTR, region.file().toRealPath().toString());
+            request.setAttribute(SENDFILE_START_ATTR, region.offset() + start);
+            request.setAttribute(SENDFILE_END_ATTR, region.offset() + end + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(region.file(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = region.offset() + start;
+            long remaining = end - start + 1;
+            while (remaining > 0) {
+                long transferred = channel.transferTo(position, remaining, out);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+    }
+
+    /**
+     * Returns the requested byte range, or {@code null} when the full content should be sent:
+     * no (or malformed) Range header, a multi-range request, or an If-Range validator that
+     * no longer matches.
+     */
+    private HttpRange singleRange(HttpServletRequest request, String etag, long lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null || !ifRangeMatches(request, etag, lastModified)) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.equals(etag);
+        }
+        try {
+            long ifRangeDate = request.getDateHeader(HttpHeaders.IF_RANGE);
+            return lastModified >= 0 && lastModified / 1000 == ifRangeDate / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
         }
     }
 
     @GetMapping(value = "get-all")
-    public ResponseEntity<List<Avatar>> getAllAvatarsPaginated(
-            @RequestParam("page") int page,
-            @RequestParam("size") int size) {
-        List<Avatar> avatars = avatarService.getAvatarsPaginated(page, size);
-        return ResponseEntity.ok(avatars);
+    public ResponseEntity<CursorPage<AvatarSummary>> getAllAvatarsPaginated(
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "size", defaultValue = "20") int size) {
+        return ResponseEntity.ok(avatarService.getAvatarsPage(after, size));
     }
 }
@@ -1,23 +1,42 @@
 package ru.hogwarts.school.controller;
 
 import  ru.hogwarts.school.model.Faculty;
-import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.cache.CacheStats;
+import ru.hogwarts.school.dto.BatchLookup;
+import ru.hogwarts.school.dto.BulkWriteReport;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.dto.FacultyPatch;
+import ru.hogwarts.school.dto.FacultySummary;
+import ru.hogwarts.school.dto.ListingOrder;
+import ru.hogwarts.school.dto.StudentSummary;
+import ru.hogwarts.school.service.BulkWriteService;
 import ru.hogwarts.school.service.FacultyService;
+import ru.hogwarts.school.service.StudentExportService;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
 import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
 
 @RestController
 @RequestMapping("faculty")
 public class FacultyController {
 
     private final FacultyService facultyService;
+    private final BulkWriteService bulkWriteService;
+    private final StudentExportService studentExportService;
 
-    public FacultyController(FacultyService facultyService) {
+    public FacultyController(FacultyService facultyService, BulkWriteService bulkWriteService,
+                             StudentExportService studentExportService) {
         this.facultyService = facultyService;
+        this.bulkWriteService = bulkWriteService;
+        this.studentExportService = studentExportService;
     }
 
     @GetMapping("{id}")
@@ -29,23 +48,77 @@ public class FacultyController {
         return ResponseEntity.ok(faculty);
     }
 
+    @GetMapping(params = "ids")
+    public ResponseEntity<BatchLookup<Faculty>> getFaculties(@RequestParam List<Long> ids) {
+        try {
+            return ResponseEntity.ok(facultyService.getFaculties(ids));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("cache/stats")
+    public ResponseEntity<CacheStats> getFacultyCacheStats() {
+        return ResponseEntity.ok(facultyService.getFacultyCacheStats());
+    }
+
     @PostMapping
     public Faculty createFaculty(@RequestBody Faculty faculty) {
         return facultyService.addFaculty(faculty);
     }
 
+    @GetMapping("list")
+    public ResponseEntity<CursorPage<FacultySummary>> listFaculties(@RequestParam(defaultValue = "id") String order,
+                                                                    @RequestParam(required = false) String cursor,
+                                                                    @RequestParam(defaultValue = "20") int size) {
+        try {
+            ListingOrder listingOrder = ListingOrder.valueOf(order.toUpperCase(Locale.ROOT));
+            return ResponseEntity.ok(facultyService.getFacultiesPage(listingOrder, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping(value = "bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<BulkWriteReport> bulkWriteFaculties(InputStream body) {
+        return ResponseEntity.ok(bulkWriteService.writeFaculties(body));
+    }
+
     @PutMapping("{id}")
     public ResponseEntity<Faculty> editFaculty(@PathVariable Long id, @RequestBody Faculty faculty) {
-        Faculty foundFaculty = facultyService.editFaculty(id, faculty);
+        Faculty foundFaculty;
+        try {
+            foundFaculty = facultyService.editFaculty(id, faculty);
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
         if (foundFaculty == null) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         }
         return ResponseEntity.ok(foundFaculty);
     }
 
+    @PatchMapping("{id}")
+    public ResponseEntity<Faculty> patchFaculty(@PathVariable Long id, @RequestBody FacultyPatch patch) {
+        Faculty patchedFaculty;
+        try {
+            patchedFaculty = facultyService.patchFaculty(id, patch);
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        if (patchedFaculty == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(patchedFaculty);
+    }
+
     @DeleteMapping("{id}")
-    public ResponseEntity<Void> deleteFaculty(@PathVariable Long id) {
-        facultyService.deleteFaculty(id);
+    public ResponseEntity<Void> deleteFaculty(@PathVariable Long id, @RequestParam(required = false) Long version) {
+        try {
+            facultyService.deleteFaculty(id, version);
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
         return ResponseEntity.ok().build();
     }
 
@@ -62,12 +135,29 @@ public class FacultyController {
     }
 
     @GetMapping("{id}/showStudents")
-    public ResponseEntity<Collection<Student>> getStudentsOfFaculty(@PathVariable Long id) {
-        Collection<Student> students = facultyService.getStudentsOfFaculty(id);
-        if (students.isEmpty()) {
+    public ResponseEntity<StreamingResponseBody> getStudentsOfFaculty(@PathVariable Long id) {
+        if (!facultyService.facultyExists(id)) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(students);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(output -> studentExportService.exportStudentsOfFaculty(id, output));
+    }
+
+    @GetMapping("{id}/students")
+    public ResponseEntity<CursorPage<StudentSummary>> listStudentsOfFaculty(@PathVariable Long id,
+                                                                           @RequestParam(required = false) String cursor,
+                                                                           @RequestParam(defaultValue = "20") int size) {
+        try {
+            return ResponseEntity.ok(facultyService.getStudentsOfFacultyPage(id, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("{id}/students/count")
+    public ResponseEntity<Long> countStudentsOfFaculty(@PathVariable Long id) {
+        return ResponseEntity.ok(facultyService.countStudentsOfFaculty(id));
     }
 
     @GetMapping("/faculties/longest-name")
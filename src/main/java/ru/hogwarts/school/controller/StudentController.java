@@ -1,23 +1,50 @@
 package ru.hogwarts.school.controller;
 
+import ru.hogwarts.school.cache.CacheStats;
+import ru.hogwarts.school.dto.AgeHistogram;
+import ru.hogwarts.school.dto.BatchLookup;
+import ru.hogwarts.school.dto.AgePercentile;
+import ru.hogwarts.school.dto.FacultyAgeStats;
+import ru.hogwarts.school.dto.StudentFaculty;
+import ru.hogwarts.school.dto.StudentPatch;
+import ru.hogwarts.school.dto.StudentStats;
 import ru.hogwarts.school.model.Faculty;
 import  ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.dto.BulkWriteReport;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.dto.StudentSummary;
+import ru.hogwarts.school.dto.ListingOrder;
+import ru.hogwarts.school.dto.RowFormat;
+import ru.hogwarts.school.service.BulkWriteService;
+import ru.hogwarts.school.service.StudentExportService;
 import ru.hogwarts.school.service.StudentService;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
 import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
 
 @RestController
 @RequestMapping("student")
 public class StudentController {
 
     private final StudentService studentService;
+    private final BulkWriteService bulkWriteService;
+    private final StudentExportService studentExportService;
 
-    public StudentController(StudentService studentService) {
+    public StudentController(StudentService studentService, BulkWriteService bulkWriteService,
+                             StudentExportService studentExportService) {
         this.studentService = studentService;
+        this.bulkWriteService = bulkWriteService;
+        this.studentExportService = studentExportService;
     }
 
     @GetMapping("{id}")
@@ -29,23 +56,124 @@ public class StudentController {
         return ResponseEntity.ok(student);
     }
 
+    @GetMapping(params = "ids")
+    public ResponseEntity<BatchLookup<Student>> getStudents(@RequestParam List<Long> ids) {
+        try {
+            return ResponseEntity.ok(studentService.getStudents(ids));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("faculties")
+    public ResponseEntity<BatchLookup<StudentFaculty>> getFacultiesOfStudents(@RequestParam List<Long> ids) {
+        try {
+            return ResponseEntity.ok(studentService.getFacultiesOfStudents(ids));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("cache/stats")
+    public ResponseEntity<CacheStats> getStudentCacheStats() {
+        return ResponseEntity.ok(studentService.getStudentCacheStats());
+    }
+
     @PostMapping
     public Student createStudent(@RequestBody Student student) {
         return studentService.addStudent(student);
     }
 
+    @GetMapping("list")
+    public ResponseEntity<CursorPage<StudentSummary>> listStudents(@RequestParam(defaultValue = "id") String order,
+                                                                   @RequestParam(required = false) String cursor,
+                                                                   @RequestParam(defaultValue = "20") int size) {
+        try {
+            ListingOrder listingOrder = ListingOrder.valueOf(order.toUpperCase(Locale.ROOT));
+            return ResponseEntity.ok(studentService.getStudentsPage(listingOrder, cursor, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping(value = "bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<BulkWriteReport> bulkWriteStudents(InputStream body) {
+        return ResponseEntity.ok(bulkWriteService.writeStudents(body));
+    }
+
+    @PostMapping(value = "import", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> importStudents(InputStream body,
+                                                                @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                                @RequestParam(required = false) String format) {
+        RowFormat rowFormat;
+        try {
+            rowFormat = format != null
+                    ? RowFormat.valueOf(format.toUpperCase(Locale.ROOT))
+                    : RowFormat.fromContentType(contentType);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(output -> bulkWriteService.importStudents(body, rowFormat, output));
+    }
+
+    @GetMapping("export")
+    public ResponseEntity<StreamingResponseBody> exportStudents(@RequestParam(defaultValue = "ndjson") String format) {
+        RowFormat rowFormat;
+        try {
+            rowFormat = RowFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(rowFormat.mediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("students." + rowFormat.extension())
+                        .build()
+                        .toString())
+                .body(output -> studentExportService.exportStudents(rowFormat, output));
+    }
+
     @PutMapping("{id}")
     public ResponseEntity<Student> editStudent(@RequestBody Student student, @PathVariable Long id) {
-        Student foundStudent = studentService.editStudent(id, student);
+        Student foundStudent;
+        try {
+            foundStudent = studentService.editStudent(id, student);
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
         if (foundStudent == null) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
         }
         return ResponseEntity.ok(foundStudent);
     }
 
+    @PatchMapping("{id}")
+    public ResponseEntity<Student> patchStudent(@RequestBody StudentPatch patch, @PathVariable Long id) {
+        Student patchedStudent;
+        try {
+            patchedStudent = studentService.patchStudent(id, patch);
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (patchedStudent == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(patchedStudent);
+    }
+
     @DeleteMapping("{id}")
-    public ResponseEntity<Void> deleteStudent(@PathVariable Long id) {
-        studentService.deleteStudent(id);
+    public ResponseEntity<Void> deleteStudent(@PathVariable Long id, @RequestParam(required = false) Long version) {
+        try {
+            studentService.deleteStudent(id, version);
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
         return ResponseEntity.ok().build();
     }
 
@@ -59,6 +187,11 @@ public class StudentController {
         return ResponseEntity.ok(studentService.getStudentsByAgeRange(min, max));
     }
 
+    @GetMapping("count-by-age-between")
+    public ResponseEntity<Long> countStudentsByAge(@RequestParam int min, @RequestParam int max) {
+        return ResponseEntity.ok(studentService.countStudentsByAgeRange(min, max));
+    }
+
     @GetMapping("{id}/showFaculty")
     public ResponseEntity<Faculty> getFacultyOfStudent(@PathVariable long id) {
         Faculty faculty = studentService.getFacultyOfStudent(id);
@@ -78,11 +211,45 @@ public class StudentController {
         return ResponseEntity.ok(studentService.getAverageStudentAge());
     }
 
+    @GetMapping("stats")
+    public ResponseEntity<StudentStats> getStudentStats() {
+        return ResponseEntity.ok(studentService.getStudentStats());
+    }
+
+    @GetMapping("analytics/age-histogram")
+    public ResponseEntity<AgeHistogram> getAgeHistogram(@RequestParam(defaultValue = "1") int bucketWidth) {
+        try {
+            return ResponseEntity.ok(studentService.getAgeHistogram(bucketWidth));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("analytics/age-percentiles")
+    public ResponseEntity<List<AgePercentile>> getAgePercentiles(@RequestParam(defaultValue = "25,50,75,90,99") double[] p) {
+        try {
+            return ResponseEntity.ok(studentService.getAgePercentiles(p));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("analytics/by-faculty")
+    public ResponseEntity<List<FacultyAgeStats>> getAgeStatsByFaculty() {
+        return ResponseEntity.ok(studentService.getAgeStatsByFaculty());
+    }
+
     @GetMapping("last-five-students")
     public ResponseEntity<List<Student>> getLastFiveStudents() {
         return ResponseEntity.ok(studentService.getLastFiveStudents());
     }
 
+    @GetMapping("names")
+    public ResponseEntity<List<String>> getStudentNamesByPrefix(@RequestParam String prefix,
+                                                                @RequestParam(defaultValue = "20") int limit) {
+        return ResponseEntity.ok(studentService.getStudentNamesByPrefix(prefix, limit));
+    }
+
     @GetMapping("/students/by-a")
     public List<String> getStudentsStartingWithA() {
         return studentService.getStudentNamesStartingWithA();
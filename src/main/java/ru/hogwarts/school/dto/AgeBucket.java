@@ -0,0 +1,7 @@
+package ru.hogwarts.school.dto;
+
+/**
+ * Students aged {@code fromAge} to {@code toAge} inclusive.
+ */
+public record AgeBucket(int fromAge, int toAge, long count) {
+}
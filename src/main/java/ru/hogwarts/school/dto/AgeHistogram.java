@@ -0,0 +1,10 @@
+package ru.hogwarts.school.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * {@code snapshotAt} is when the student data the histogram was computed from was read.
+ */
+public record AgeHistogram(int bucketWidth, long total, List<AgeBucket> buckets, Instant snapshotAt) {
+}
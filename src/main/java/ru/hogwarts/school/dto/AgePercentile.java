@@ -0,0 +1,7 @@
+package ru.hogwarts.school.dto;
+
+/**
+ * {@code age} is {@code null} when there are no students.
+ */
+public record AgePercentile(double percentile, Integer age) {
+}
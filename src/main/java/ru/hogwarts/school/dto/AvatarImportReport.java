@@ -0,0 +1,10 @@
+package ru.hogwarts.school.dto;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk import, one result per archive entry in archive order. {@code error} is set
+ * when the archive itself could not be read to the end; entries before that point are still imported.
+ */
+public record AvatarImportReport(int imported, int failed, String error, List<AvatarImportResult> entries) {
+}
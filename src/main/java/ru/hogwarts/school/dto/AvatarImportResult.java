@@ -0,0 +1,6 @@
+package ru.hogwarts.school.dto;
+
+import ru.hogwarts.school.model.AvatarUploadStatus;
+
+public record AvatarImportResult(String entry, Long studentId, AvatarUploadStatus status, String error) {
+}
@@ -0,0 +1,4 @@
+package ru.hogwarts.school.dto;
+
+public record AvatarOriginal(Long id, Long studentId, String contentHash, String mediaType) {
+}
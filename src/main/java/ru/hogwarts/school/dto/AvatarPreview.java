@@ -0,0 +1,4 @@
+package ru.hogwarts.school.dto;
+
+public record AvatarPreview(String key, String mediaType, byte[] data) {
+}
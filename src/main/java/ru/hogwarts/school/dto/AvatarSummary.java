@@ -0,0 +1,8 @@
+package ru.hogwarts.school.dto;
+
+public record AvatarSummary(Long id, Long studentId, String mediaType, Long fileSize, String previewUrl) {
+
+    public AvatarSummary(Long id, Long studentId, String mediaType, Long fileSize) {
+        this(id, studentId, mediaType, fileSize, "/avatar/" + studentId + "/avatar/preview");
+    }
+}
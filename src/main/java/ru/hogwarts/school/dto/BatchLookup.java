@@ -0,0 +1,10 @@
+package ru.hogwarts.school.dto;
+
+import java.util.List;
+
+/**
+ * The result of looking up several ids at once: what was found, in the order the ids were
+ * requested, and the requested ids that matched nothing.
+ */
+public record BatchLookup<T>(List<T> items, List<Long> missing) {
+}
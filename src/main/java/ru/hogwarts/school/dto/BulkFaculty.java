@@ -0,0 +1,8 @@
+package ru.hogwarts.school.dto;
+
+/**
+ * One row of a bulk faculty write: created when {@code id} is {@code null}, otherwise replaces
+ * the faculty with that id.
+ */
+public record BulkFaculty(Long id, String name, String color) {
+}
@@ -0,0 +1,7 @@
+package ru.hogwarts.school.dto;
+
+/**
+ * {@code row} is the zero-based position of the row in the request body.
+ */
+public record BulkRowError(int row, Long id, String error) {
+}
@@ -0,0 +1,11 @@
+package ru.hogwarts.school.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One row of a bulk student write: created when {@code id} is {@code null}, otherwise replaces
+ * the student with that id. The faculty is given by id or, failing that, by name.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BulkStudent(Long id, String name, Integer age, Long facultyId, String facultyName) {
+}
@@ -0,0 +1,7 @@
+package ru.hogwarts.school.dto;
+
+/**
+ * Running totals of a bulk write, reported after every chunk.
+ */
+public record BulkWriteProgress(int rows, int created, int updated, int failed) {
+}
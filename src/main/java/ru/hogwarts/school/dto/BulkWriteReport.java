@@ -0,0 +1,11 @@
+package ru.hogwarts.school.dto;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk write. {@code errors} lists the first failed rows, {@code failed} counts all
+ * of them. {@code error} is set when the body could not be read to the end; rows before that
+ * point are still written.
+ */
+public record BulkWriteReport(int created, int updated, int failed, String error, List<BulkRowError> errors) {
+}
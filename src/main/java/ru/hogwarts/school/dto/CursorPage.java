@@ -0,0 +1,10 @@
+package ru.hogwarts.school.dto;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing. {@code nextCursor} is passed back to fetch the
+ * following page and is {@code null} on the last one.
+ */
+public record CursorPage<T>(List<T> items, String nextCursor) {
+}
@@ -0,0 +1,7 @@
+package ru.hogwarts.school.dto;
+
+/**
+ * {@code facultyId} is {@code null} for the students without a faculty.
+ */
+public record FacultyAgeStats(Long facultyId, long count, double averageAge, int minAge, int maxAge) {
+}
@@ -0,0 +1,8 @@
+package ru.hogwarts.school.dto;
+
+/**
+ * Fields to change on a faculty; {@code null} fields are left as they are. With a
+ * {@code version}, the change only applies if the faculty is still at that version.
+ */
+public record FacultyPatch(String name, String color, Long version) {
+}
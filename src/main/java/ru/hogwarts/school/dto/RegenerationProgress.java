@@ -0,0 +1,14 @@
+package ru.hogwarts.school.dto;
+
+import ru.hogwarts.school.model.RegenerationStatus;
+
+import java.time.Instant;
+
+/**
+ * {@code avatarsPerSecond} and {@code etaSeconds} are measured since the job was last started
+ * or resumed; the ETA is {@code null} until there is a rate to go by.
+ */
+public record RegenerationProgress(long jobId, RegenerationStatus status, long processed, long failed, long total,
+                                   long lastAvatarId, double avatarsPerSecond, Long etaSeconds,
+                                   Instant startedAt, Instant updatedAt) {
+}
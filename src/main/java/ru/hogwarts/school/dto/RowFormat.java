@@ -0,0 +1,34 @@
+package ru.hogwarts.school.dto;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Line-per-row formats students are exported in and imported from.
+ */
+public enum RowFormat {
+    NDJSON(MediaType.APPLICATION_NDJSON, "ndjson"),
+    CSV(new MediaType("text", "csv"), "csv");
+
+    private final MediaType mediaType;
+    private final String extension;
+
+    RowFormat(MediaType mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    public MediaType mediaType() {
+        return mediaType;
+    }
+
+    public String extension() {
+        return extension;
+    }
+
+    /**
+     * CSV for a {@code text/csv} body, NDJSON otherwise, which also covers plain JSON arrays.
+     */
+    public static RowFormat fromContentType(String contentType) {
+        return contentType != null && CSV.mediaType.isCompatibleWith(MediaType.parseMediaType(contentType)) ? CSV : NDJSON;
+    }
+}
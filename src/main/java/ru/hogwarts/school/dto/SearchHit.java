@@ -0,0 +1,8 @@
+package ru.hogwarts.school.dto;
+
+/**
+ * A student or faculty whose {@code field} matched the query. {@code type} is {@code student} or
+ * {@code faculty}; {@code score} is between 0 and 1, higher for closer matches.
+ */
+public record SearchHit(String type, long id, String field, String text, double score) {
+}
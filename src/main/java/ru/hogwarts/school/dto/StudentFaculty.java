@@ -0,0 +1,7 @@
+package ru.hogwarts.school.dto;
+
+/**
+ * A student's faculty; {@code faculty} is {@code null} for a student without one.
+ */
+public record StudentFaculty(long studentId, FacultySummary faculty) {
+}
@@ -0,0 +1,8 @@
+package ru.hogwarts.school.dto;
+
+/**
+ * Fields to change on a student; {@code null} fields are left as they are. With a
+ * {@code version}, the change only applies if the student is still at that version.
+ */
+public record StudentPatch(String name, Integer age, Long facultyId, Long version) {
+}
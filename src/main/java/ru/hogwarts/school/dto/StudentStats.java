@@ -0,0 +1,7 @@
+package ru.hogwarts.school.dto;
+
+/**
+ * {@code minAge} and {@code maxAge} are {@code null} and {@code averageAge} is 0 when there are no students.
+ */
+public record StudentStats(long count, long sumOfAges, double averageAge, Integer minAge, Integer maxAge) {
+}
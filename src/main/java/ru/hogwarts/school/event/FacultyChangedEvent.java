@@ -0,0 +1,8 @@
+package ru.hogwarts.school.event;
+
+/**
+ * Published for every faculty write. {@code before} is {@code null} for a new faculty,
+ * {@code after} is {@code null} for a deleted one.
+ */
+public record FacultyChangedEvent(FacultySnapshot before, FacultySnapshot after) {
+}
@@ -0,0 +1,13 @@
+package ru.hogwarts.school.event;
+
+import ru.hogwarts.school.model.Faculty;
+
+/**
+ * The indexed fields of a faculty at one point in time.
+ */
+public record FacultySnapshot(long id, String name, String color) {
+
+    public static FacultySnapshot of(Faculty faculty) {
+        return new FacultySnapshot(faculty.getId(), faculty.getName(), faculty.getColor());
+    }
+}
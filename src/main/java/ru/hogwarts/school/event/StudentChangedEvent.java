@@ -0,0 +1,8 @@
+package ru.hogwarts.school.event;
+
+/**
+ * Published by {@link ru.hogwarts.school.service.StudentService} for every student write.
+ * {@code before} is {@code null} for a new student, {@code after} is {@code null} for a deleted one.
+ */
+public record StudentChangedEvent(StudentSnapshot before, StudentSnapshot after) {
+}
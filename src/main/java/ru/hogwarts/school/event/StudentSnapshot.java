@@ -0,0 +1,14 @@
+package ru.hogwarts.school.event;
+
+import ru.hogwarts.school.model.Student;
+
+/**
+ * The indexed fields of a student at one point in time; entities are mutable, snapshots are not.
+ */
+public record StudentSnapshot(long id, String name, int age, Long facultyId) {
+
+    public static StudentSnapshot of(Student student) {
+        return new StudentSnapshot(student.getId(), student.getName(), student.getAge(),
+                student.getFaculty() == null ? null : student.getFaculty().getId());
+    }
+}
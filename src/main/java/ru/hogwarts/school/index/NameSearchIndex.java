@@ -0,0 +1,145 @@
+package ru.hogwarts.school.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.dto.FacultySummary;
+import ru.hogwarts.school.dto.SearchHit;
+import ru.hogwarts.school.dto.StudentName;
+import ru.hogwarts.school.event.FacultyChangedEvent;
+import ru.hogwarts.school.event.FacultySnapshot;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.event.StudentSnapshot;
+import ru.hogwarts.school.repositories.FacultyRepository;
+import ru.hogwarts.school.repositories.StudentRepository;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Trigram indexes over student names and faculty names and colors, for fuzzy search.
+ * <p>
+ * Loaded once at startup and kept current by {@link StudentChangedEvent}s and
+ * {@link FacultyChangedEvent}s. Searches share a read lock; loads and updates take the write
+ * lock.
+ */
+@Component
+public class NameSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(NameSearchIndex.class);
+
+    private final StudentRepository studentRepository;
+    private final FacultyRepository facultyRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private final TrigramIndex studentNames = new TrigramIndex();
+    private final TrigramIndex facultyNames = new TrigramIndex();
+    private final TrigramIndex facultyColors = new TrigramIndex();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public NameSearchIndex(StudentRepository studentRepository, FacultyRepository facultyRepository,
+                           TransactionTemplate transactionTemplate) {
+        this.studentRepository = studentRepository;
+        this.facultyRepository = facultyRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<StudentName> names = studentRepository.streamNames()) {
+                    names.forEach(student -> studentNames.put(student.id(), student.name()));
+                }
+                for (FacultySummary faculty : facultyRepository.findSummariesAfterId(0, Limit.unlimited())) {
+                    facultyNames.put(faculty.id(), faculty.name());
+                    facultyColors.put(faculty.id(), faculty.color());
+                }
+            });
+            logger.info("Loaded {} student names and {} faculty names into the search index",
+                    studentNames.size(), facultyNames.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStudentChanged(StudentChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (event.before() != null) {
+                studentNames.remove(event.before().id());
+            }
+            StudentSnapshot after = event.after();
+            if (after != null) {
+                studentNames.put(after.id(), after.name());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFacultyChanged(FacultyChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (event.before() != null) {
+                facultyNames.remove(event.before().id());
+                facultyColors.remove(event.before().id());
+            }
+            FacultySnapshot after = event.after();
+            if (after != null) {
+                facultyNames.put(after.id(), after.name());
+                facultyColors.put(after.id(), after.color());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Students and faculties whose name or color shares at least {@code minScore} of the query's
+     * trigrams, best first. A faculty matching on both fields is listed once, for the better one.
+     */
+    public List<SearchHit> search(String query, int limit, double minScore) {
+        List<SearchHit> hits = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (TrigramIndex.Match match : studentNames.search(query, limit, minScore)) {
+                hits.add(new SearchHit("student", match.id(), "name", match.text(), match.score()));
+            }
+            List<TrigramIndex.Match> byColor = facultyColors.search(query, limit, minScore);
+            for (TrigramIndex.Match match : facultyNames.search(query, limit, minScore)) {
+                double colorScore = byColor.stream()
+                        .filter(color -> color.id() == match.id())
+                        .mapToDouble(TrigramIndex.Match::score)
+                        .max()
+                        .orElse(0);
+                if (match.score() >= colorScore) {
+                    hits.add(new SearchHit("faculty", match.id(), "name", match.text(), match.score()));
+                }
+            }
+            for (TrigramIndex.Match match : byColor) {
+                if (hits.stream().noneMatch(hit -> hit.type().equals("faculty") && hit.id() == match.id())) {
+                    hits.add(new SearchHit("faculty", match.id(), "color", match.text(), match.score()));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        hits.sort(Comparator.comparingDouble(SearchHit::score).reversed()
+                .thenComparing(SearchHit::type)
+                .thenComparingLong(SearchHit::id));
+        return hits.size() > limit ? hits.subList(0, limit) : hits;
+    }
+}
@@ -0,0 +1,177 @@
+package ru.hogwarts.school.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.dto.StudentAge;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.repositories.StudentRepository;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Student ids bucketed by age in plain {@code long[]} arrays, one bucket per year of age.
+ * <p>
+ * Ages are a small domain, so a range lookup copies a handful of buckets and a range count just
+ * adds their sizes. Removal swaps the last id of the bucket into the freed slot; each id's slot
+ * and age are kept in primitive hash maps. Ages outside {@code [0, MAX_AGE]} are not bucketed:
+ * while any such student exists, {@link #idsBetween} declines and callers query the database.
+ * It declines the same way until the students are loaded at startup.
+ */
+@Component
+public class StudentAgeIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(StudentAgeIndex.class);
+
+    static final int MAX_AGE = 255;
+
+    private final StudentRepository studentRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final long[][] idsByAge = new long[MAX_AGE + 1][];
+    private final int[] sizes = new int[MAX_AGE + 1];
+    private final LongIntHashMap slots = new LongIntHashMap(1024);
+    private final LongIntHashMap ages = new LongIntHashMap(1024);
+    private int outOfRange;
+    private boolean loaded;
+
+    public StudentAgeIndex(StudentRepository studentRepository, TransactionTemplate transactionTemplate) {
+        this.studentRepository = studentRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * The write lock is taken before the query runs, so a write committed after the query's
+     * snapshot is applied after the rows it read rather than overwritten by them.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        lock.writeLock().lock();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<StudentAge> students = studentRepository.streamAges()) {
+                    load(students);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void load(Stream<StudentAge> students) {
+        lock.writeLock().lock();
+        try {
+            students.forEach(student -> put(student.id(), student.age()));
+            loaded = true;
+            logger.info("Loaded {} students into the age index", ages.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStudentChanged(StudentChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            if (event.before() != null) {
+                remove(event.before().id());
+            }
+            if (event.after() != null) {
+                put(event.after().id(), event.after().age());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of the students aged {@code min} to {@code max} inclusive, or {@code null} if the
+     * index cannot answer because it is not loaded yet or some ages are outside its domain.
+     */
+    public long[] idsBetween(int min, int max) {
+        lock.readLock().lock();
+        try {
+            if (!loaded || outOfRange > 0) {
+                return null;
+            }
+            int from = Math.max(min, 0);
+            int to = Math.min(max, MAX_AGE);
+            int total = 0;
+            for (int age = from; age <= to; age++) {
+                total += sizes[age];
+            }
+            long[] ids = new long[total];
+            int position = 0;
+            for (int age = from; age <= to; age++) {
+                if (sizes[age] > 0) {
+                    System.arraycopy(idsByAge[age], 0, ids, position, sizes[age]);
+                    position += sizes[age];
+                }
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of students aged {@code min} to {@code max} inclusive, or -1 if the index cannot answer.
+     */
+    public long countBetween(int min, int max) {
+        lock.readLock().lock();
+        try {
+            if (!loaded || outOfRange > 0) {
+                return -1;
+            }
+            long count = 0;
+            for (int age = Math.max(min, 0); age <= Math.min(max, MAX_AGE); age++) {
+                count += sizes[age];
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void put(long id, int age) {
+        remove(id);
+        ages.put(id, age);
+        if (age < 0 || age > MAX_AGE) {
+            outOfRange++;
+            return;
+        }
+        long[] bucket = idsByAge[age];
+        if (bucket == null) {
+            bucket = idsByAge[age] = new long[16];
+        } else if (sizes[age] == bucket.length) {
+            bucket = idsByAge[age] = Arrays.copyOf(bucket, bucket.length * 2);
+        }
+        slots.put(id, sizes[age]);
+        bucket[sizes[age]++] = id;
+    }
+
+    private void remove(long id) {
+        int age = ages.remove(id, Integer.MIN_VALUE);
+        if (age == Integer.MIN_VALUE) {
+            return;
+        }
+        if (age < 0 || age > MAX_AGE) {
+            outOfRange--;
+            return;
+        }
+        int slot = slots.remove(id, -1);
+        long[] bucket = idsByAge[age];
+        long last = bucket[--sizes[age]];
+        if (last != id) {
+            bucket[slot] = last;
+            slots.put(last, slot);
+        }
+    }
+}
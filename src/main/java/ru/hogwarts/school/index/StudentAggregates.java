@@ -0,0 +1,99 @@
+package ru.hogwarts.school.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school.dto.AgeCount;
+import ru.hogwarts.school.dto.StudentStats;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.repositories.StudentRepository;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Running count, age sum and age range of all students, so the dashboard endpoints read a
+ * prepared value instead of querying.
+ * <p>
+ * Every committed student write adjusts a per-age count, from which a new {@link StudentStats}
+ * is published. The whole thing is rebuilt from a {@code GROUP BY age} at startup and every
+ * {@code student.aggregates.reconcile-interval}, which also repairs the rare drift from a
+ * write that commits while a rebuild is running.
+ */
+@Component
+public class StudentAggregates {
+
+    private static final Logger logger = LoggerFactory.getLogger(StudentAggregates.class);
+
+    private final StudentRepository studentRepository;
+
+    /** Guarded by {@code this}. */
+    private final TreeMap<Integer, Long> countsByAge = new TreeMap<>();
+    private long count;
+    private long sumOfAges;
+
+    private volatile StudentStats stats = new StudentStats(0, 0, 0, null, null);
+
+    public StudentAggregates(StudentRepository studentRepository) {
+        this.studentRepository = studentRepository;
+    }
+
+    public StudentStats getStats() {
+        return stats;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${student.aggregates.reconcile-interval:PT5M}",
+            fixedDelayString = "${student.aggregates.reconcile-interval:PT5M}")
+    public void reconcile() {
+        List<AgeCount> ageCounts = studentRepository.countByAge();
+        synchronized (this) {
+            StudentStats previous = stats;
+            countsByAge.clear();
+            count = 0;
+            sumOfAges = 0;
+            for (AgeCount ageCount : ageCounts) {
+                adjust(ageCount.age(), ageCount.count());
+            }
+            publish();
+            if (previous.count() != count || previous.sumOfAges() != sumOfAges) {
+                logger.info("Student aggregates reconciled: count {} -> {}, sum of ages {} -> {}",
+                        previous.count(), count, previous.sumOfAges(), sumOfAges);
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onStudentChanged(StudentChangedEvent event) {
+        if (event.before() != null) {
+            adjust(event.before().age(), -1);
+        }
+        if (event.after() != null) {
+            adjust(event.after().age(), 1);
+        }
+        publish();
+    }
+
+    private void adjust(int age, long delta) {
+        long ageCount = countsByAge.getOrDefault(age, 0L) + delta;
+        if (ageCount > 0) {
+            countsByAge.put(age, ageCount);
+        } else {
+            countsByAge.remove(age);
+        }
+        count += delta;
+        sumOfAges += age * delta;
+    }
+
+    private void publish() {
+        Map.Entry<Integer, Long> youngest = countsByAge.firstEntry();
+        Map.Entry<Integer, Long> oldest = countsByAge.lastEntry();
+        stats = new StudentStats(count, sumOfAges, count > 0 ? (double) sumOfAges / count : 0,
+                youngest == null ? null : youngest.getKey(), oldest == null ? null : oldest.getKey());
+    }
+}
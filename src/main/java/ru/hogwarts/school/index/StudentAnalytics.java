@@ -0,0 +1,307 @@
+package ru.hogwarts.school.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.dto.AgeBucket;
+import ru.hogwarts.school.dto.AgeHistogram;
+import ru.hogwarts.school.dto.AgePercentile;
+import ru.hogwarts.school.dto.FacultyAgeStats;
+import ru.hogwarts.school.dto.StudentAgeFaculty;
+import ru.hogwarts.school.repositories.StudentRepository;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.BinaryOperator;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Age and faculty of every student in two parallel primitive arrays, for reporting queries that
+ * look at all students at once.
+ * <p>
+ * The snapshot is rebuilt from a streaming projection at startup and every
+ * {@code student.analytics.refresh-interval}, and swapped in whole, so reports can be that much
+ * behind the database but always see one consistent read. Reports scan the arrays in tight
+ * loops; above {@link #PARALLEL_THRESHOLD} students the scan is split into ranges that run on
+ * the common fork-join pool and are merged afterwards.
+ */
+@Component
+public class StudentAnalytics {
+
+    private static final Logger logger = LoggerFactory.getLogger(StudentAnalytics.class);
+
+    /** Stands for "no faculty" in the faculty column; generated ids start at 1. */
+    static final long NO_FACULTY = 0;
+
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+    static final int MAX_BUCKETS = 10_000;
+
+    private final StudentRepository studentRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private volatile Snapshot snapshot = new Snapshot(new int[0], new long[0], Instant.EPOCH);
+
+    /**
+     * {@code ages[i]} and {@code facultyIds[i]} belong to the same student.
+     */
+    record Snapshot(int[] ages, long[] facultyIds, Instant readAt) {
+    }
+
+    public StudentAnalytics(StudentRepository studentRepository, TransactionTemplate transactionTemplate) {
+        this.studentRepository = studentRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${student.analytics.refresh-interval:PT1M}",
+            fixedDelayString = "${student.analytics.refresh-interval:PT1M}")
+    public void refresh() {
+        long startedAt = System.nanoTime();
+        Instant readAt = Instant.now();
+        Columns columns = new Columns(Math.max(1024, snapshot.ages().length));
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<StudentAgeFaculty> students = studentRepository.streamAgesAndFaculties()) {
+                students.forEach(columns::add);
+            }
+        });
+        snapshot = columns.toSnapshot(readAt);
+        logger.debug("Refreshed student analytics snapshot of {} students in {} ms",
+                columns.size, (System.nanoTime() - startedAt) / 1_000_000);
+    }
+
+    void setSnapshot(Snapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * Student counts per age bucket, from the youngest student's bucket to the oldest's. Buckets
+     * are aligned to multiples of {@code bucketWidth}, and empty buckets in between are included.
+     *
+     * @throws IllegalArgumentException if the width is not positive or yields more than {@link #MAX_BUCKETS} buckets
+     */
+    public AgeHistogram histogram(int bucketWidth) {
+        if (bucketWidth < 1) {
+            throw new IllegalArgumentException("Bucket width must be positive: " + bucketWidth);
+        }
+        Snapshot current = snapshot;
+        int[] ages = current.ages();
+        if (ages.length == 0) {
+            return new AgeHistogram(bucketWidth, 0, List.of(), current.readAt());
+        }
+        int[] range = minMax(ages);
+        long firstBucket = Math.floorDiv(range[0], bucketWidth);
+        long bucketCount = Math.floorDiv(range[1], bucketWidth) - firstBucket + 1;
+        if (bucketCount > MAX_BUCKETS) {
+            throw new IllegalArgumentException("Bucket width " + bucketWidth + " yields " + bucketCount + " buckets");
+        }
+        long origin = firstBucket * bucketWidth;
+        long[] counts = countBuckets(ages, origin, bucketWidth, (int) bucketCount);
+
+        List<AgeBucket> buckets = new ArrayList<>(counts.length);
+        for (int i = 0; i < counts.length; i++) {
+            long from = origin + (long) i * bucketWidth;
+            buckets.add(new AgeBucket((int) from, (int) Math.min(from + bucketWidth - 1, Integer.MAX_VALUE), counts[i]));
+        }
+        return new AgeHistogram(bucketWidth, ages.length, buckets, current.readAt());
+    }
+
+    /**
+     * Nearest-rank percentiles of student age: the smallest age such that at least
+     * {@code percentile}% of students are that age or younger.
+     *
+     * @throws IllegalArgumentException if a percentile is outside {@code [0, 100]}
+     */
+    public List<AgePercentile> percentiles(double... percentiles) {
+        for (double percentile : percentiles) {
+            if (!(percentile >= 0 && percentile <= 100)) {
+                throw new IllegalArgumentException("Percentile must be between 0 and 100: " + percentile);
+            }
+        }
+        int[] ages = snapshot.ages();
+        List<AgePercentile> result = new ArrayList<>(percentiles.length);
+        if (ages.length == 0) {
+            for (double percentile : percentiles) {
+                result.add(new AgePercentile(percentile, null));
+            }
+            return result;
+        }
+
+        int[] range = minMax(ages);
+        if ((long) range[1] - range[0] < MAX_BUCKETS) {
+            // ages are a small domain: a counting pass beats sorting
+            long[] counts = countBuckets(ages, range[0], 1, range[1] - range[0] + 1);
+            for (double percentile : percentiles) {
+                long rank = rank(percentile, ages.length);
+                int age = 0;
+                long seen = counts[0];
+                while (seen < rank) {
+                    seen += counts[++age];
+                }
+                result.add(new AgePercentile(percentile, range[0] + age));
+            }
+        } else {
+            int[] sorted = ages.clone();
+            Arrays.parallelSort(sorted);
+            for (double percentile : percentiles) {
+                result.add(new AgePercentile(percentile, sorted[(int) rank(percentile, sorted.length) - 1]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Count and age statistics per faculty, ordered by faculty id, students without a faculty last.
+     */
+    public List<FacultyAgeStats> byFaculty() {
+        Snapshot current = snapshot;
+        int[] ages = current.ages();
+        long[] facultyIds = current.facultyIds();
+        FacultyGroups groups = reduceRanges(ages.length, (from, to) -> {
+            FacultyGroups chunk = new FacultyGroups();
+            for (int i = from; i < to; i++) {
+                chunk.add(facultyIds[i], 1, ages[i], ages[i], ages[i]);
+            }
+            return chunk;
+        }, FacultyGroups::merge);
+
+        List<FacultyAgeStats> result = new ArrayList<>(groups.size);
+        for (int g = 0; g < groups.size; g++) {
+            result.add(new FacultyAgeStats(groups.facultyIds[g] == NO_FACULTY ? null : groups.facultyIds[g],
+                    groups.counts[g], (double) groups.sums[g] / groups.counts[g], groups.mins[g], groups.maxs[g]));
+        }
+        result.sort(Comparator.comparing(FacultyAgeStats::facultyId, Comparator.nullsLast(Comparator.naturalOrder())));
+        return result;
+    }
+
+    private static long rank(double percentile, int total) {
+        return Math.max(1, (long) Math.ceil(percentile / 100 * total));
+    }
+
+    private static int[] minMax(int[] ages) {
+        return reduceRanges(ages.length, (from, to) -> {
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (int i = from; i < to; i++) {
+                min = Math.min(min, ages[i]);
+                max = Math.max(max, ages[i]);
+            }
+            return new int[]{min, max};
+        }, (a, b) -> new int[]{Math.min(a[0], b[0]), Math.max(a[1], b[1])});
+    }
+
+    private static long[] countBuckets(int[] ages, long origin, int bucketWidth, int bucketCount) {
+        return reduceRanges(ages.length, (from, to) -> {
+            long[] counts = new long[bucketCount];
+            for (int i = from; i < to; i++) {
+                counts[(int) ((ages[i] - origin) / bucketWidth)]++;
+            }
+            return counts;
+        }, (a, b) -> {
+            for (int i = 0; i < a.length; i++) {
+                a[i] += b[i];
+            }
+            return a;
+        });
+    }
+
+    /**
+     * Runs {@code task} over {@code [0, length)}, split into ranges that run in parallel when the
+     * input is large enough to pay for it, and merges the partial results.
+     */
+    private static <T> T reduceRanges(int length, RangeTask<T> task, BinaryOperator<T> merge) {
+        if (length < PARALLEL_THRESHOLD) {
+            return task.apply(0, length);
+        }
+        int chunks = Math.min(Runtime.getRuntime().availableProcessors() * 4, length / (PARALLEL_THRESHOLD / 4));
+        int chunkSize = (length + chunks - 1) / chunks;
+        return IntStream.range(0, chunks)
+                .parallel()
+                .mapToObj(chunk -> task.apply(chunk * chunkSize, Math.min(length, (chunk + 1) * chunkSize)))
+                .reduce(merge)
+                .orElseThrow();
+    }
+
+    @FunctionalInterface
+    private interface RangeTask<T> {
+        T apply(int from, int to);
+    }
+
+    /**
+     * Grows the two columns while the projection is streamed.
+     */
+    private static final class Columns {
+        int[] ages;
+        long[] facultyIds;
+        int size;
+
+        Columns(int capacity) {
+            ages = new int[capacity];
+            facultyIds = new long[capacity];
+        }
+
+        void add(StudentAgeFaculty student) {
+            if (size == ages.length) {
+                ages = Arrays.copyOf(ages, size * 2);
+                facultyIds = Arrays.copyOf(facultyIds, size * 2);
+            }
+            ages[size] = student.age();
+            facultyIds[size] = student.facultyId() == null ? NO_FACULTY : student.facultyId();
+            size++;
+        }
+
+        Snapshot toSnapshot(Instant readAt) {
+            return new Snapshot(Arrays.copyOf(ages, size), Arrays.copyOf(facultyIds, size), readAt);
+        }
+    }
+
+    /**
+     * Count, age sum and age range per faculty id, in parallel arrays indexed by group.
+     */
+    private static final class FacultyGroups {
+        final LongIntHashMap groupOf = new LongIntHashMap(16);
+        long[] facultyIds = new long[16];
+        long[] counts = new long[16];
+        long[] sums = new long[16];
+        int[] mins = new int[16];
+        int[] maxs = new int[16];
+        int size;
+
+        void add(long facultyId, long count, long sum, int min, int max) {
+            int group = groupOf.get(facultyId, -1);
+            if (group < 0) {
+                if (size == facultyIds.length) {
+                    facultyIds = Arrays.copyOf(facultyIds, size * 2);
+                    counts = Arrays.copyOf(counts, size * 2);
+                    sums = Arrays.copyOf(sums, size * 2);
+                    mins = Arrays.copyOf(mins, size * 2);
+                    maxs = Arrays.copyOf(maxs, size * 2);
+                }
+                group = size++;
+                groupOf.put(facultyId, group);
+                facultyIds[group] = facultyId;
+                mins[group] = min;
+                maxs[group] = max;
+            } else {
+                mins[group] = Math.min(mins[group], min);
+                maxs[group] = Math.max(maxs[group], max);
+            }
+            counts[group] += count;
+            sums[group] += sum;
+        }
+
+        FacultyGroups merge(FacultyGroups other) {
+            for (int g = 0; g < other.size; g++) {
+                add(other.facultyIds[g], other.counts[g], other.sums[g], other.mins[g], other.maxs[g]);
+            }
+            return this;
+        }
+    }
+}
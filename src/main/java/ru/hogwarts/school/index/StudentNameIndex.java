@@ -0,0 +1,103 @@
+package ru.hogwarts.school.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.dto.StudentName;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.event.StudentSnapshot;
+import ru.hogwarts.school.repositories.StudentRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * Student names sorted by their case-folded form, for prefix lookups.
+ * <p>
+ * Keys are the folded name followed by the student id, so equal names keep one entry per
+ * student; a prefix lookup is a range scan that stops after {@code limit} entries. Loaded once
+ * at startup and kept current by {@link StudentChangedEvent}s. Reads never lock; writes are
+ * serialized, which also orders them after the initial load.
+ */
+@Component
+public class StudentNameIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(StudentNameIndex.class);
+
+    private final StudentRepository studentRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ConcurrentSkipListMap<String, String> namesByKey = new ConcurrentSkipListMap<>();
+    private final Map<Long, String> keysById = new ConcurrentHashMap<>();
+
+    public StudentNameIndex(StudentRepository studentRepository, TransactionTemplate transactionTemplate) {
+        this.studentRepository = studentRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void load() {
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<StudentName> names = studentRepository.streamNames()) {
+                names.forEach(student -> put(student.id(), student.name()));
+            }
+        });
+        logger.info("Loaded {} student names into the name index", keysById.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onStudentChanged(StudentChangedEvent event) {
+        if (event.before() != null) {
+            remove(event.before().id());
+        }
+        StudentSnapshot after = event.after();
+        if (after != null) {
+            put(after.id(), after.name());
+        }
+    }
+
+    /**
+     * Names starting with the prefix, ignoring case, in case-folded order.
+     */
+    public List<String> findByPrefix(String prefix, int limit) {
+        String folded = fold(prefix);
+        List<String> names = new ArrayList<>(Math.min(limit, 64));
+        for (String name : namesByKey.subMap(folded, true, folded + Character.MAX_VALUE, false).values()) {
+            if (names.size() >= limit) {
+                break;
+            }
+            names.add(name);
+        }
+        return names;
+    }
+
+    private void put(long id, String name) {
+        remove(id);
+        if (name == null) {
+            return;
+        }
+        String key = fold(name) + '\0' + id;
+        namesByKey.put(key, name);
+        keysById.put(id, key);
+    }
+
+    private void remove(long id) {
+        String key = keysById.remove(id);
+        if (key != null) {
+            namesByKey.remove(key);
+        }
+    }
+
+    private static String fold(String value) {
+        return value.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,289 @@
+package ru.hogwarts.school.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+/**
+ * Inverted index from the trigrams of a short text to the ids that carry it, for fuzzy lookups.
+ * <p>
+ * Trigrams are taken the way PostgreSQL's {@code pg_trgm} takes them: the text is case-folded
+ * and split into words of letters and digits, and each word is padded with two spaces in front
+ * and one behind. Every indexed text gets a dense document number; the posting list of a
+ * trigram is the ascending document numbers that contain it. A replaced or removed text only
+ * leaves a tombstone, and the whole index is rebuilt once tombstones outnumber live texts.
+ * Not thread-safe.
+ */
+final class TrigramIndex {
+
+    private static final int COMPACT_MIN_DELETED = 1024;
+    private static final int NO_DOC = -1;
+
+    private final LongIntHashMap docOf = new LongIntHashMap(1024);
+    private long[] ids = new long[1024];
+    private String[] texts = new String[1024];
+    private int[] trigramCounts = new int[1024];
+    private int docCount;
+    private int deleted;
+
+    private final LongIntHashMap listOf = new LongIntHashMap(1024);
+    private int[][] postings = new int[1024][];
+    private int[] postingSizes = new int[1024];
+    private int listCount;
+
+    /**
+     * An indexed text and how closely it matched, between 0 and 1.
+     */
+    record Match(long id, String text, double score) {
+    }
+
+    /** Worst match first, so the head of a heap is the one to drop. */
+    private static final Comparator<Match> WORST_FIRST = Comparator.comparingDouble(Match::score)
+            .thenComparing(Comparator.comparingLong(Match::id).reversed());
+
+    int size() {
+        return docOf.size();
+    }
+
+    void put(long id, String text) {
+        remove(id);
+        if (text == null) {
+            return;
+        }
+        long[] trigrams = trigrams(text, false);
+        if (trigrams.length == 0) {
+            return;
+        }
+        if (docCount == ids.length) {
+            ids = Arrays.copyOf(ids, docCount * 2);
+            texts = Arrays.copyOf(texts, docCount * 2);
+            trigramCounts = Arrays.copyOf(trigramCounts, docCount * 2);
+        }
+        int doc = docCount++;
+        ids[doc] = id;
+        texts[doc] = text;
+        trigramCounts[doc] = trigrams.length;
+        docOf.put(id, doc);
+        for (long trigram : trigrams) {
+            append(trigram, doc);
+        }
+    }
+
+    void remove(long id) {
+        int doc = docOf.remove(id, NO_DOC);
+        if (doc == NO_DOC) {
+            return;
+        }
+        texts[doc] = null;
+        deleted++;
+        if (deleted >= COMPACT_MIN_DELETED && deleted > docOf.size()) {
+            compact();
+        }
+    }
+
+    void clear() {
+        docOf.clear();
+        listOf.clear();
+        Arrays.fill(texts, 0, docCount, null);
+        Arrays.fill(postings, 0, listCount, null);
+        docCount = 0;
+        deleted = 0;
+        listCount = 0;
+    }
+
+    /**
+     * Texts sharing at least {@code minScore} of the query's trigrams, best first. The query's
+     * last word is not padded behind unless the query ends in a separator, so an unfinished word
+     * matches as a prefix.
+     * <p>
+     * A text that shares {@code required} of the query's {@code q} trigrams must be in at least
+     * one of any {@code q - required + 1} of their posting lists, so only the shortest ones are
+     * merged for candidates and the rest are probed by galloping forward as candidates ascend.
+     * Once {@code limit} matches are held, a candidate whose best possible score cannot beat the
+     * worst of them is not probed at all.
+     */
+    List<Match> search(String query, int limit, double minScore) {
+        long[] trigrams = trigrams(query, true);
+        int q = trigrams.length;
+        if (q == 0 || limit <= 0) {
+            return List.of();
+        }
+        int[][] lists = new int[q][];
+        int[] sizes = new int[q];
+        for (int i = 0; i < q; i++) {
+            int list = listOf.get(trigrams[i], NO_DOC);
+            lists[i] = list == NO_DOC ? new int[0] : postings[list];
+            sizes[i] = list == NO_DOC ? 0 : postingSizes[list];
+        }
+        sortBySize(lists, sizes);
+
+        int required = Math.max(1, (int) Math.ceil(minScore * q - 1e-9));
+        int seeds = q - required + 1;
+        int[] cursors = new int[q];
+        PriorityQueue<Match> top = new PriorityQueue<>(Math.min(limit, 1024) + 1, WORST_FIRST);
+        while (true) {
+            int doc = Integer.MAX_VALUE;
+            for (int s = 0; s < seeds; s++) {
+                if (cursors[s] < sizes[s]) {
+                    doc = Math.min(doc, lists[s][cursors[s]]);
+                }
+            }
+            if (doc == Integer.MAX_VALUE) {
+                break;
+            }
+            int shared = 0;
+            for (int s = 0; s < seeds; s++) {
+                if (cursors[s] < sizes[s] && lists[s][cursors[s]] == doc) {
+                    cursors[s]++;
+                    shared++;
+                }
+            }
+            if (texts[doc] == null
+                    || top.size() == limit && score(q, trigramCounts[doc], Math.min(q, trigramCounts[doc])) <= top.peek().score()) {
+                continue;
+            }
+            for (int r = seeds; r < q && shared + q - r >= required; r++) {
+                cursors[r] = advance(lists[r], cursors[r], sizes[r], doc);
+                if (cursors[r] < sizes[r] && lists[r][cursors[r]] == doc) {
+                    shared++;
+                }
+            }
+            if (shared < required) {
+                continue;
+            }
+            double score = score(q, trigramCounts[doc], shared);
+            if (top.size() == limit && score <= top.peek().score()) {
+                continue;
+            }
+            top.add(new Match(ids[doc], texts[doc], score));
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        List<Match> matches = new ArrayList<>(top);
+        matches.sort(WORST_FIRST.reversed());
+        return matches;
+    }
+
+    /**
+     * Average of the share of the query's trigrams found in the text and the Jaccard similarity
+     * of both trigram sets, which ranks a close match of the whole text above a longer text that
+     * merely contains the query.
+     */
+    private static double score(int queryTrigrams, int textTrigrams, int shared) {
+        double containment = (double) shared / queryTrigrams;
+        double jaccard = (double) shared / (queryTrigrams + textTrigrams - shared);
+        return (containment + jaccard) / 2;
+    }
+
+    /**
+     * Position of the first element at or after {@code from} that is not below {@code doc}.
+     */
+    private static int advance(int[] list, int from, int size, int doc) {
+        if (from >= size || list[from] >= doc) {
+            return from;
+        }
+        int step = 1;
+        while (from + step < size && list[from + step] < doc) {
+            step <<= 1;
+        }
+        int found = Arrays.binarySearch(list, from + (step >> 1) + 1, Math.min(from + step + 1, size), doc);
+        return found >= 0 ? found : -found - 1;
+    }
+
+    /**
+     * Distinct trigrams of the text in ascending order, each packed as three 16-bit chars.
+     */
+    static long[] trigrams(String text, boolean prefix) {
+        String folded = text.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+        int length = folded.length();
+        long[] trigrams = new long[length + 1];
+        int count = 0;
+        int i = 0;
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(folded.charAt(i))) {
+                i++;
+            }
+            char first = ' ';
+            char second = ' ';
+            for (; i < length && Character.isLetterOrDigit(folded.charAt(i)); i++) {
+                char third = folded.charAt(i);
+                trigrams[count++] = pack(first, second, third);
+                first = second;
+                second = third;
+            }
+            if (second != ' ' && !(prefix && i == length)) {
+                trigrams[count++] = pack(first, second, ' ');
+            }
+        }
+        Arrays.sort(trigrams, 0, count);
+        int distinct = 0;
+        for (int j = 0; j < count; j++) {
+            if (distinct == 0 || trigrams[distinct - 1] != trigrams[j]) {
+                trigrams[distinct++] = trigrams[j];
+            }
+        }
+        return Arrays.copyOf(trigrams, distinct);
+    }
+
+    private static long pack(char first, char second, char third) {
+        return (long) first << 32 | (long) second << 16 | third;
+    }
+
+    private void append(long trigram, int doc) {
+        int list = listOf.get(trigram, NO_DOC);
+        if (list == NO_DOC) {
+            if (listCount == postings.length) {
+                postings = Arrays.copyOf(postings, listCount * 2);
+                postingSizes = Arrays.copyOf(postingSizes, listCount * 2);
+            }
+            list = listCount++;
+            listOf.put(trigram, list);
+            postings[list] = new int[4];
+            postingSizes[list] = 0;
+        }
+        int size = postingSizes[list];
+        if (size == postings[list].length) {
+            postings[list] = Arrays.copyOf(postings[list], size * 2);
+        }
+        postings[list][size] = doc;
+        postingSizes[list] = size + 1;
+    }
+
+    private void compact() {
+        int live = docOf.size();
+        long[] liveIds = new long[live];
+        String[] liveTexts = new String[live];
+        int n = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (texts[doc] != null) {
+                liveIds[n] = ids[doc];
+                liveTexts[n++] = texts[doc];
+            }
+        }
+        clear();
+        for (int i = 0; i < n; i++) {
+            put(liveIds[i], liveTexts[i]);
+        }
+    }
+
+    /**
+     * Insertion sort of the query's posting lists, shortest first; a query has few trigrams.
+     */
+    private static void sortBySize(int[][] lists, int[] sizes) {
+        for (int i = 1; i < sizes.length; i++) {
+            int[] list = lists[i];
+            int size = sizes[i];
+            int j = i - 1;
+            for (; j >= 0 && sizes[j] > size; j--) {
+                lists[j + 1] = lists[j];
+                sizes[j + 1] = sizes[j];
+            }
+            lists[j + 1] = list;
+            sizes[j + 1] = size;
+        }
+    }
+}
@@ -2,18 +2,19 @@ package ru.hogwarts.school.model;
 
 import jakarta.persistence.*;
 
+import java.time.Instant;
+
 @Entity
 public class Avatar {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "avatar_seq")
+    @SequenceGenerator(name = "avatar_seq", sequenceName = "avatar_seq", allocationSize = 50)
     private long id;
-    private String filepath;
     private long fileSize;
     private String mediaType;
-
-    @Lob
-    private byte[] data;
+    private String contentHash;
+    private Instant updatedAt;
 
     @OneToOne
     private Student student;
@@ -22,12 +23,11 @@ public class Avatar {
 
     }
 
-    public Avatar(long id, String filepath, long fileSize, String mediaType, byte[] data, Student student) {
+    public Avatar(long id, long fileSize, String mediaType, String contentHash, Student student) {
         this.id = id;
-        this.filepath = filepath;
         this.fileSize = fileSize;
         this.mediaType = mediaType;
-        this.data = data;
+        this.contentHash = contentHash;
         this.student = student;
     }
 
@@ -35,10 +35,6 @@ public class Avatar {
         return id;
     }
 
-    public String getFilepath() {
-        return filepath;
-    }
-
     public long getFileSize() {
         return fileSize;
     }
@@ -47,8 +43,12 @@ public class Avatar {
         return mediaType;
     }
 
-    public byte[] getData() {
-        return data;
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
     }
 
     public Student getStudent() {
@@ -59,10 +59,6 @@ public class Avatar {
         this.id = id;
     }
 
-    public void setFilepath(String filepath) {
-        this.filepath = filepath;
-    }
-
     public void setFileSize(long fileSize) {
         this.fileSize = fileSize;
     }
@@ -71,8 +67,12 @@ public class Avatar {
         this.mediaType = mediaType;
     }
 
-    public void setData(byte[] data) {
-        this.data = data;
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
     }
 
     public void setStudent(Student student) {
@@ -0,0 +1,94 @@
+package ru.hogwarts.school.model;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * Progress of a preview regeneration run. {@code lastAvatarId} is the checkpoint: every avatar
+ * up to it has been regenerated, so a restarted job continues right after it.
+ */
+@Entity
+public class AvatarRegenerationJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "avatar_regeneration_job_seq")
+    @SequenceGenerator(name = "avatar_regeneration_job_seq", sequenceName = "avatar_regeneration_job_seq", allocationSize = 50)
+    private long id;
+
+    @Enumerated(EnumType.STRING)
+    private RegenerationStatus status;
+    private long lastAvatarId;
+    private long processed;
+    private long failed;
+    private long total;
+    private Instant startedAt;
+    private Instant updatedAt;
+
+    public AvatarRegenerationJob() {
+
+    }
+
+    public AvatarRegenerationJob(long total) {
+        this.status = RegenerationStatus.RUNNING;
+        this.total = total;
+        this.startedAt = Instant.now();
+        this.updatedAt = startedAt;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public RegenerationStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(RegenerationStatus status) {
+        this.status = status;
+    }
+
+    public long getLastAvatarId() {
+        return lastAvatarId;
+    }
+
+    public void setLastAvatarId(long lastAvatarId) {
+        this.lastAvatarId = lastAvatarId;
+    }
+
+    public long getProcessed() {
+        return processed;
+    }
+
+    public void setProcessed(long processed) {
+        this.processed = processed;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
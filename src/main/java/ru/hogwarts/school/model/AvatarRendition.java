@@ -0,0 +1,81 @@
+package ru.hogwarts.school.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+
+@Entity
+public class AvatarRendition {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "avatar_rendition_seq")
+    @SequenceGenerator(name = "avatar_rendition_seq", sequenceName = "avatar_rendition_seq", allocationSize = 50)
+    private long id;
+    private int width;
+    private int height;
+    private String mediaType;
+    private String blobKey;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JsonIgnore
+    private Avatar avatar;
+
+    public AvatarRendition() {
+
+    }
+
+    public AvatarRendition(Avatar avatar, int width, int height, String mediaType, String blobKey) {
+        this.avatar = avatar;
+        this.width = width;
+        this.height = height;
+        this.mediaType = mediaType;
+        this.blobKey = blobKey;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public String getBlobKey() {
+        return blobKey;
+    }
+
+    public Avatar getAvatar() {
+        return avatar;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public void setWidth(int width) {
+        this.width = width;
+    }
+
+    public void setHeight(int height) {
+        this.height = height;
+    }
+
+    public void setMediaType(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public void setBlobKey(String blobKey) {
+        this.blobKey = blobKey;
+    }
+
+    public void setAvatar(Avatar avatar) {
+        this.avatar = avatar;
+    }
+}
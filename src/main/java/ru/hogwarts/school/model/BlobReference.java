@@ -0,0 +1,40 @@
+package ru.hogwarts.school.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+
+/**
+ * Number of avatar and rendition rows pointing at a blob store key.
+ */
+@Entity
+public class BlobReference {
+
+    @Id
+    private String blobKey;
+    private long refCount;
+
+    public BlobReference() {
+
+    }
+
+    public BlobReference(String blobKey, long refCount) {
+        this.blobKey = blobKey;
+        this.refCount = refCount;
+    }
+
+    public String getBlobKey() {
+        return blobKey;
+    }
+
+    public long getRefCount() {
+        return refCount;
+    }
+
+    public void setBlobKey(String blobKey) {
+        this.blobKey = blobKey;
+    }
+
+    public void setRefCount(long refCount) {
+        this.refCount = refCount;
+    }
+}
@@ -10,11 +10,16 @@ import java.util.Objects;
 public class Faculty {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "faculty_seq")
+    @SequenceGenerator(name = "faculty_seq", sequenceName = "faculty_seq", allocationSize = 50)
     private long id;
     private String name;
     private String color;
 
+    /** Bumped by every update; {@code null} on a request body means "don't check". */
+    @Version
+    private Long version;
+
     @OneToMany(mappedBy = "faculty")
     @JsonManagedReference
     private Collection<Student> students;
@@ -52,6 +57,14 @@ public class Faculty {
         return color;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,8 @@
+package ru.hogwarts.school.model;
+
+public enum RegenerationStatus {
+    RUNNING,
+    COMPLETED,
+    CANCELLED,
+    FAILED
+}
@@ -9,11 +9,16 @@ import java.util.Objects;
 public class Student {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "student_seq")
+    @SequenceGenerator(name = "student_seq", sequenceName = "student_seq", allocationSize = 50)
     private long id;
     private String name;
     private int age;
 
+    /** Bumped by every update; {@code null} on a request body means "don't check". */
+    @Version
+    private Long version;
+
     @ManyToOne
     @JoinColumn(name = "faculty_id")
     @JsonBackReference
@@ -52,6 +57,14 @@ public class Student {
         return age;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,14 @@
+package ru.hogwarts.school.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import ru.hogwarts.school.model.AvatarRegenerationJob;
+import ru.hogwarts.school.model.RegenerationStatus;
+
+import java.util.Optional;
+
+public interface AvatarRegenerationJobRepository extends JpaRepository<AvatarRegenerationJob, Long> {
+
+    Optional<AvatarRegenerationJob> findFirstByOrderByIdDesc();
+
+    Optional<AvatarRegenerationJob> findFirstByStatusOrderByIdDesc(RegenerationStatus status);
+}
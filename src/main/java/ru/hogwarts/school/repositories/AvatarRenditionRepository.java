@@ -0,0 +1,25 @@
+package ru.hogwarts.school.repositories;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import ru.hogwarts.school.model.AvatarRendition;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface AvatarRenditionRepository extends JpaRepository<AvatarRendition, Long> {
+
+    List<AvatarRendition> findByAvatarIdOrderByWidth(long avatarId);
+
+    List<AvatarRendition> findByAvatarIdIn(Collection<Long> avatarIds);
+
+    @Query("SELECT r FROM AvatarRendition r WHERE r.avatar.student.id = :studentId " +
+            "ORDER BY abs(r.width - :width), r.width DESC")
+    List<AvatarRendition> findNearestByStudentId(Long studentId, int width, Limit limit);
+
+    @Modifying
+    @Query("DELETE FROM AvatarRendition r WHERE r.avatar.id IN :avatarIds")
+    void deleteByAvatarIdIn(Collection<Long> avatarIds);
+}
@@ -1,11 +1,33 @@
 package ru.hogwarts.school.repositories;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import ru.hogwarts.school.dto.AvatarOriginal;
+import ru.hogwarts.school.dto.AvatarSummary;
 import ru.hogwarts.school.model.Avatar;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface AvatarRepository extends JpaRepository<Avatar, Long> {
 
     Optional<Avatar> findByStudentId(Long studentId);
+
+    List<Avatar> findByStudentIdIn(Collection<Long> studentIds);
+
+    Optional<Avatar> findFirstByContentHashOrderById(String contentHash);
+
+    @Query("SELECT new ru.hogwarts.school.dto.AvatarSummary(a.id, a.student.id, a.mediaType, a.fileSize) " +
+            "FROM Avatar a WHERE a.id > :afterId ORDER BY a.id")
+    List<AvatarSummary> findSummariesAfter(long afterId, Limit limit);
+
+    @Query("SELECT new ru.hogwarts.school.dto.AvatarOriginal(a.id, a.student.id, a.contentHash, a.mediaType) " +
+            "FROM Avatar a WHERE a.id > :afterId AND a.contentHash IS NOT NULL ORDER BY a.id")
+    List<AvatarOriginal> findOriginalsAfter(long afterId, Limit limit);
+
+    @Query("SELECT new ru.hogwarts.school.dto.AvatarOriginal(a.id, a.student.id, a.contentHash, a.mediaType) " +
+            "FROM Avatar a WHERE a.id IN :ids")
+    List<AvatarOriginal> findOriginalsByIdIn(Collection<Long> ids);
 }
@@ -0,0 +1,43 @@
+package ru.hogwarts.school.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import ru.hogwarts.school.model.BlobReference;
+
+public interface BlobReferenceRepository extends JpaRepository<BlobReference, String> {
+
+    @Modifying
+    @Query(value = "INSERT INTO blob_reference (blob_key, ref_count) VALUES (:blobKey, 1) " +
+            "ON CONFLICT (blob_key) DO UPDATE SET ref_count = blob_reference.ref_count + 1", nativeQuery = true)
+    void increment(String blobKey);
+
+    @Modifying
+    @Query("UPDATE BlobReference r SET r.refCount = r.refCount - 1 WHERE r.blobKey = :blobKey")
+    int decrement(String blobKey);
+
+    @Modifying
+    @Query("DELETE FROM BlobReference r WHERE r.blobKey = :blobKey AND r.refCount <= 0")
+    int deleteUnreferenced(String blobKey);
+
+    /**
+     * Zeroes the counts of keys no avatar or rendition row points at anymore.
+     */
+    @Modifying
+    @Query(value = "UPDATE blob_reference r SET ref_count = 0 WHERE r.ref_count <> 0 " +
+            "AND NOT EXISTS (SELECT 1 FROM avatar a WHERE a.content_hash = r.blob_key) " +
+            "AND NOT EXISTS (SELECT 1 FROM avatar_rendition ar WHERE ar.blob_key = r.blob_key)", nativeQuery = true)
+    int resetUnreferenced();
+
+    /**
+     * Rebuilds every count from the avatar and rendition rows.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO blob_reference (blob_key, ref_count) " +
+            "SELECT k.blob_key, COUNT(*) FROM (" +
+            "SELECT content_hash AS blob_key FROM avatar WHERE content_hash IS NOT NULL " +
+            "UNION ALL SELECT blob_key FROM avatar_rendition WHERE blob_key IS NOT NULL) k " +
+            "GROUP BY k.blob_key " +
+            "ON CONFLICT (blob_key) DO UPDATE SET ref_count = EXCLUDED.ref_count", nativeQuery = true)
+    int recountAll();
+}
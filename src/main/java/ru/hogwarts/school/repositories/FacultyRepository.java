@@ -1,12 +1,76 @@
 package ru.hogwarts.school.repositories;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import ru.hogwarts.school.dto.FacultySummary;
 import ru.hogwarts.school.model.Faculty;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 public interface FacultyRepository extends JpaRepository<Faculty, Long> {
     Collection<Faculty> findByNameIgnoreCase(String name);
 
     Collection<Faculty> findByColorIgnoreCase(String color);
+
+    @Query("SELECT DISTINCT f FROM Faculty f LEFT JOIN FETCH f.students WHERE f.id IN :ids")
+    List<Faculty> findAllWithStudentsByIdIn(Collection<Long> ids);
+
+    @Query("SELECT f FROM Faculty f WHERE LOWER(f.name) IN :lowerCaseNames")
+    List<Faculty> findByLowerCaseNameIn(Collection<String> lowerCaseNames);
+
+    @Query("SELECT new ru.hogwarts.school.dto.FacultySummary(f.id, f.name, f.color) " +
+            "FROM Faculty f WHERE f.id > :afterId ORDER BY f.id")
+    List<FacultySummary> findSummariesAfterId(long afterId, Limit limit);
+
+    /**
+     * Rows without a name come first, as if named with the empty string.
+     */
+    @Query("SELECT new ru.hogwarts.school.dto.FacultySummary(f.id, f.name, f.color) FROM Faculty f " +
+            "WHERE COALESCE(f.name, '') >= :afterName " +
+            "AND (COALESCE(f.name, '') > :afterName OR f.id > :afterId) ORDER BY COALESCE(f.name, ''), f.id")
+    List<FacultySummary> findSummariesAfterName(String afterName, long afterId, Limit limit);
+
+    /**
+     * Replaces the faculty's fields in one statement, if it exists and, when {@code version} is
+     * given, is still at that version. Returns the fields as they were and the new version, or
+     * nothing if no row matched.
+     */
+    @Query(value = "UPDATE faculty f SET name = :name, color = :color, version = f.version + 1 " +
+            "FROM (SELECT id, name, color FROM faculty WHERE id = :id FOR UPDATE) old " +
+            "WHERE f.id = old.id AND (CAST(:version AS bigint) IS NULL OR f.version = CAST(:version AS bigint)) " +
+            "RETURNING old.name AS \"name\", old.color AS \"color\", f.version AS \"version\"", nativeQuery = true)
+    Optional<PriorState> updateById(long id, String name, String color, Long version);
+
+    /**
+     * Like {@link #updateById}, but {@code null} fields keep their current value.
+     */
+    @Query(value = "UPDATE faculty f SET name = COALESCE(CAST(:name AS varchar), old.name), " +
+            "color = COALESCE(CAST(:color AS varchar), old.color), version = f.version + 1 " +
+            "FROM (SELECT id, name, color FROM faculty WHERE id = :id FOR UPDATE) old " +
+            "WHERE f.id = old.id AND (CAST(:version AS bigint) IS NULL OR f.version = CAST(:version AS bigint)) " +
+            "RETURNING old.name AS \"name\", old.color AS \"color\", f.version AS \"version\"", nativeQuery = true)
+    Optional<PriorState> patchById(long id, String name, String color, Long version);
+
+    /**
+     * Deletes the faculty in one statement, under the same conditions as {@link #updateById}.
+     * Returns the deleted fields, or nothing if no row matched.
+     */
+    @Query(value = "DELETE FROM faculty " +
+            "WHERE id = :id AND (CAST(:version AS bigint) IS NULL OR version = CAST(:version AS bigint)) " +
+            "RETURNING name AS \"name\", color AS \"color\", version AS \"version\"", nativeQuery = true)
+    Optional<PriorState> deleteByIdReturning(long id, Long version);
+
+    /**
+     * A faculty row as it was before a conditional write, and its version after it.
+     */
+    interface PriorState {
+        String getName();
+
+        String getColor();
+
+        long getVersion();
+    }
 }
@@ -1,17 +1,32 @@
 package ru.hogwarts.school.repositories;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import ru.hogwarts.school.dto.AgeCount;
+import ru.hogwarts.school.dto.StudentAge;
+import ru.hogwarts.school.dto.StudentAgeFaculty;
+import ru.hogwarts.school.dto.StudentName;
+import ru.hogwarts.school.dto.StudentSummary;
 import ru.hogwarts.school.model.Student;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface StudentRepository extends JpaRepository<Student, Long> {
+    List<Student> findByAge(int age);
+
     Collection<Student> findByAgeBetween(int min, int max);
 
+    long countByAgeBetween(int min, int max);
+
     @Query("SELECT COUNT(s) FROM Student s")
     long getStudentCount();
 
@@ -20,4 +35,103 @@ public interface StudentRepository extends JpaRepository<Student, Long> {
 
     @Query(value = "SELECT * FROM student ORDER BY id DESC LIMIT 5", nativeQuery = true)
     List<Student> getLastFiveStudents();
+
+    @Query("SELECT new ru.hogwarts.school.dto.StudentName(s.id, s.name) FROM Student s")
+    Stream<StudentName> streamNames();
+
+    @Query("SELECT new ru.hogwarts.school.dto.StudentName(s.id, s.name) FROM Student s WHERE s.name IN :names")
+    List<StudentName> findNamesIn(Collection<String> names);
+
+    @Query("SELECT new ru.hogwarts.school.dto.AgeCount(s.age, COUNT(s)) FROM Student s GROUP BY s.age")
+    List<AgeCount> countByAge();
+
+    @Query("SELECT new ru.hogwarts.school.dto.StudentAge(s.id, s.age) FROM Student s")
+    Stream<StudentAge> streamAges();
+
+    @Query("SELECT new ru.hogwarts.school.dto.StudentAgeFaculty(s.age, f.id) FROM Student s LEFT JOIN s.faculty f")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    Stream<StudentAgeFaculty> streamAgesAndFaculties();
+
+    @Query("SELECT new ru.hogwarts.school.dto.StudentSummary(s.id, s.name, s.age, s.faculty.id) " +
+            "FROM Student s WHERE s.faculty.id = :facultyId AND s.id > :afterId ORDER BY s.id")
+    List<StudentSummary> findSummariesOfFacultyAfterId(long facultyId, long afterId, Limit limit);
+
+    @Query("SELECT new ru.hogwarts.school.dto.StudentSummary(s.id, s.name, s.age, s.faculty.id) " +
+            "FROM Student s WHERE s.faculty.id = :facultyId ORDER BY s.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<StudentSummary> streamSummariesOfFaculty(long facultyId);
+
+    @Query("SELECT COUNT(s) FROM Student s WHERE s.faculty.id = :facultyId")
+    long countByFacultyId(long facultyId);
+
+    @Query("SELECT s FROM Student s LEFT JOIN FETCH s.faculty WHERE s.id IN :ids")
+    List<Student> findAllWithFacultyByIdIn(Collection<Long> ids);
+
+    @Query("SELECT s FROM Student s LEFT JOIN FETCH s.faculty ORDER BY s.id")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<Student> streamAllWithFaculty();
+
+    @Query("SELECT new ru.hogwarts.school.dto.StudentSummary(s.id, s.name, s.age, f.id) " +
+            "FROM Student s LEFT JOIN s.faculty f WHERE s.id > :afterId ORDER BY s.id")
+    List<StudentSummary> findSummariesAfterId(long afterId, Limit limit);
+
+    /**
+     * Rows without a name come first, as if named with the empty string.
+     */
+    @Query("SELECT new ru.hogwarts.school.dto.StudentSummary(s.id, s.name, s.age, f.id) " +
+            "FROM Student s LEFT JOIN s.faculty f " +
+            "WHERE COALESCE(s.name, '') >= :afterName " +
+            "AND (COALESCE(s.name, '') > :afterName OR s.id > :afterId) ORDER BY COALESCE(s.name, ''), s.id")
+    List<StudentSummary> findSummariesAfterName(String afterName, long afterId, Limit limit);
+
+    /**
+     * Replaces the student's fields in one statement, if it exists and, when {@code version} is
+     * given, is still at that version. Returns the fields as they were and the new version, or
+     * nothing if no row matched.
+     */
+    @Query(value = "UPDATE student s SET name = :name, age = :age, faculty_id = CAST(:facultyId AS bigint), " +
+            "version = s.version + 1 " +
+            "FROM (SELECT id, name, age, faculty_id FROM student WHERE id = :id FOR UPDATE) old " +
+            "WHERE s.id = old.id AND (CAST(:version AS bigint) IS NULL OR s.version = CAST(:version AS bigint)) " +
+            "RETURNING old.name AS \"name\", old.age AS \"age\", old.faculty_id AS \"facultyId\", " +
+            "s.version AS \"version\"", nativeQuery = true)
+    Optional<PriorState> updateById(long id, String name, int age, Long facultyId, Long version);
+
+    /**
+     * Like {@link #updateById}, but {@code null} fields keep their current value.
+     */
+    @Query(value = "UPDATE student s SET name = COALESCE(CAST(:name AS varchar), old.name), " +
+            "age = COALESCE(CAST(:age AS integer), old.age), " +
+            "faculty_id = COALESCE(CAST(:facultyId AS bigint), old.faculty_id), version = s.version + 1 " +
+            "FROM (SELECT id, name, age, faculty_id FROM student WHERE id = :id FOR UPDATE) old " +
+            "WHERE s.id = old.id AND (CAST(:version AS bigint) IS NULL OR s.version = CAST(:version AS bigint)) " +
+            "RETURNING old.name AS \"name\", old.age AS \"age\", old.faculty_id AS \"facultyId\", " +
+            "s.version AS \"version\"", nativeQuery = true)
+    Optional<PriorState> patchById(long id, String name, Integer age, Long facultyId, Long version);
+
+    /**
+     * Deletes the student in one statement, under the same conditions as {@link #updateById}.
+     * Returns the deleted fields, or nothing if no row matched.
+     */
+    @Query(value = "DELETE FROM student " +
+            "WHERE id = :id AND (CAST(:version AS bigint) IS NULL OR version = CAST(:version AS bigint)) " +
+            "RETURNING name AS \"name\", age AS \"age\", faculty_id AS \"facultyId\", version AS \"version\"",
+            nativeQuery = true)
+    Optional<PriorState> deleteByIdReturning(long id, Long version);
+
+    /**
+     * A student row as it was before a conditional write, and its version after it.
+     */
+    interface PriorState {
+        String getName();
+
+        int getAge();
+
+        Long getFacultyId();
+
+        long getVersion();
+    }
 }
@@ -0,0 +1,244 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.repositories.BlobReferenceRepository;
+import ru.hogwarts.school.storage.BlobStore;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Blob;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Moves avatar bytes that predate the blob store into it: the original referenced by
+ * {@code avatar.filepath} and the preview LOBs in {@code avatar.data} and {@code avatar_rendition.data}.
+ * An avatar keeps its {@code filepath} until its original is in the store, which covers rows that
+ * were hashed before the store existed but whose file was never copied into it.
+ * Rows are walked in id order with one transaction per batch, so an interrupted run simply
+ * picks up the remaining rows on the next start.
+ * <p>
+ * When a run moved anything, blob reference counts are rebuilt from the avatar and rendition rows.
+ * Uploads may already be running by then, so the rebuild holds a lock on {@code blob_reference}
+ * that every count change conflicts with: counts changed before it are part of what it reads, and
+ * counts changed after it are applied on top. Once everything is moved the table is left alone.
+ */
+@Component
+@ConditionalOnProperty(name = "avatar.blob-migration.enabled", havingValue = "true", matchIfMissing = true)
+public class AvatarBlobMigration implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvatarBlobMigration.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BlobStore blobStore;
+    private final BlobReferenceRepository blobReferenceRepository;
+
+    @Value("${avatar.blob-migration.batch-size:100}")
+    private int batchSize;
+
+    public AvatarBlobMigration(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, BlobStore blobStore,
+                               BlobReferenceRepository blobReferenceRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.blobStore = blobStore;
+        this.blobReferenceRepository = blobReferenceRepository;
+    }
+
+    private record LegacyAvatar(long id, String filepath, String contentHash, String mediaType, byte[] data, Long oid) {
+    }
+
+    private record LegacyRendition(long id, byte[] data, Long oid) {
+    }
+
+    /**
+     * Legacy avatar rows read in one batch and how many of them were actually changed; rows whose
+     * original file is missing stay as they are.
+     */
+    private record AvatarBatch(List<LegacyAvatar> rows, int migrated) {
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long migratedAvatars = 0;
+        String avatarDataType = columnType("avatar", "data");
+        if (avatarDataType != null && columnType("avatar", "filepath") != null) {
+            long lastId = 0;
+            AvatarBatch batch;
+            do {
+                long afterId = lastId;
+                batch = transactionTemplate.execute(status -> migrateAvatarBatch(afterId, avatarDataType));
+                migratedAvatars += batch.migrated();
+                if (!batch.rows().isEmpty()) {
+                    lastId = batch.rows().get(batch.rows().size() - 1).id();
+                    logger.info("Migrated {} legacy avatars to the blob store (last id = {})", migratedAvatars, lastId);
+                }
+            } while (batch.rows().size() == batchSize);
+        }
+
+        long migratedRenditions = 0;
+        String renditionDataType = columnType("avatar_rendition", "data");
+        if (renditionDataType != null) {
+            List<LegacyRendition> batch;
+            do {
+                batch = transactionTemplate.execute(status -> migrateRenditionBatch(renditionDataType));
+                migratedRenditions += batch.size();
+                if (!batch.isEmpty()) {
+                    logger.info("Migrated {} legacy renditions to the blob store", migratedRenditions);
+                }
+            } while (batch.size() == batchSize);
+        }
+
+        if (migratedAvatars > 0 || migratedRenditions > 0) {
+            Integer counted = transactionTemplate.execute(status -> {
+                jdbcTemplate.execute("LOCK TABLE blob_reference IN EXCLUSIVE MODE");
+                int reset = blobReferenceRepository.resetUnreferenced();
+                return reset + blobReferenceRepository.recountAll();
+            });
+            logger.info("Recounted references of {} blobs", counted);
+        }
+    }
+
+    private AvatarBatch migrateAvatarBatch(long afterId, String dataType) {
+        List<LegacyAvatar> batch = jdbcTemplate.query(
+                "SELECT id, filepath, content_hash, media_type, data FROM avatar " +
+                        "WHERE id > ? AND (data IS NOT NULL OR filepath IS NOT NULL) " +
+                        "ORDER BY id LIMIT ?",
+                (rs, rowNum) -> new LegacyAvatar(rs.getLong("id"), rs.getString("filepath"),
+                        rs.getString("content_hash"), rs.getString("media_type"),
+                        readLob(rs, dataType), oidOf(rs, dataType)),
+                afterId, batchSize);
+
+        List<Object[]> updates = new ArrayList<>(batch.size());
+        for (LegacyAvatar avatar : batch) {
+            String contentHash = avatar.contentHash();
+            String filepath = avatar.filepath();
+            if (contentHash == null || !blobStore.exists(contentHash)) {
+                String stored = storeOriginal(avatar);
+                if (stored != null) {
+                    contentHash = stored;
+                    filepath = null;
+                }
+            } else {
+                filepath = null;
+            }
+            if (filepath != null && avatar.data() == null) {
+                // the original file is missing and there is nothing else to move
+                continue;
+            }
+            if (avatar.data() != null) {
+                BufferedImage preview = decode(avatar.data());
+                jdbcTemplate.update(
+                        "INSERT INTO avatar_rendition (id, avatar_id, width, height, media_type, blob_key) " +
+                                "VALUES (nextval('avatar_rendition_seq'), ?, ?, ?, ?, ?)",
+                        avatar.id(), preview == null ? 0 : preview.getWidth(), preview == null ? 0 : preview.getHeight(),
+                        avatar.mediaType(), put(avatar.data()));
+            }
+            unlink(avatar.oid());
+            updates.add(new Object[]{contentHash, filepath, avatar.id()});
+        }
+        jdbcTemplate.batchUpdate("UPDATE avatar SET content_hash = ?, filepath = ?, data = NULL WHERE id = ?", updates);
+        return new AvatarBatch(batch, updates.size());
+    }
+
+    private List<LegacyRendition> migrateRenditionBatch(String dataType) {
+        List<LegacyRendition> batch = jdbcTemplate.query(
+                "SELECT id, data FROM avatar_rendition WHERE data IS NOT NULL ORDER BY id LIMIT ?",
+                (rs, rowNum) -> new LegacyRendition(rs.getLong("id"), readLob(rs, dataType), oidOf(rs, dataType)),
+                batchSize);
+
+        List<Object[]> updates = new ArrayList<>(batch.size());
+        for (LegacyRendition rendition : batch) {
+            unlink(rendition.oid());
+            updates.add(new Object[]{put(rendition.data()), rendition.id()});
+        }
+        jdbcTemplate.batchUpdate("UPDATE avatar_rendition SET blob_key = ?, data = NULL WHERE id = ?", updates);
+        return batch;
+    }
+
+    private String storeOriginal(LegacyAvatar avatar) {
+        if (avatar.filepath() == null || !Files.exists(Path.of(avatar.filepath()))) {
+            logger.warn("Original file of avatar id = {} is missing: {}", avatar.id(), avatar.filepath());
+            return null;
+        }
+        try {
+            Path stagingFile = blobStore.createStagingFile();
+            Files.copy(Path.of(avatar.filepath()), stagingFile, REPLACE_EXISTING);
+            return blobStore.putFile(stagingFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String put(byte[] data) {
+        try {
+            return blobStore.put(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private BufferedImage decode(byte[] data) {
+        try {
+            return ImageIO.read(new ByteArrayInputStream(data));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Hibernate maps {@code @Lob byte[]} to a PostgreSQL large object ({@code oid}); older schemas may use {@code bytea}.
+     */
+    private byte[] readLob(ResultSet rs, String dataType) throws SQLException {
+        if ("bytea".equals(dataType)) {
+            return rs.getBytes("data");
+        }
+        Blob blob = rs.getBlob("data");
+        if (blob == null) {
+            return null;
+        }
+        try {
+            return blob.getBytes(1, (int) blob.length());
+        } finally {
+            blob.free();
+        }
+    }
+
+    private Long oidOf(ResultSet rs, String dataType) throws SQLException {
+        if (!"oid".equals(dataType)) {
+            return null;
+        }
+        long oid = rs.getLong("data");
+        return rs.wasNull() ? null : oid;
+    }
+
+    private void unlink(Long oid) {
+        if (oid != null) {
+            jdbcTemplate.queryForObject("SELECT lo_unlink(?)", Integer.class, oid);
+        }
+    }
+
+    private String columnType(String table, String column) {
+        List<String> types = jdbcTemplate.queryForList(
+                "SELECT data_type FROM information_schema.columns WHERE table_name = ? AND column_name = ?",
+                String.class, table, column);
+        return types.isEmpty() ? null : types.get(0);
+    }
+}
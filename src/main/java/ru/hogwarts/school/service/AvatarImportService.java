@@ -0,0 +1,306 @@
+package ru.hogwarts.school.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import ru.hogwarts.school.archive.ArchiveReader;
+import ru.hogwarts.school.dto.AvatarImportReport;
+import ru.hogwarts.school.dto.AvatarImportResult;
+import ru.hogwarts.school.model.AvatarUploadStatus;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repositories.StudentRepository;
+import ru.hogwarts.school.storage.BlobStore;
+import ru.hogwarts.school.storage.ContentHashes;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Imports avatars in bulk from a ZIP or TAR archive whose entries are named by student id,
+ * e.g. {@code 42.jpg}.
+ * <p>
+ * The archive is read once, front to back. Each entry is staged on disk and decoded on a pool
+ * sized to the CPU count while the next entries are read; at most two entries per worker are in
+ * flight, so the archive is never held in memory or fully unpacked. Decoded entries are saved
+ * in batches through {@link AvatarService#finishUploads}.
+ */
+@Service
+public class AvatarImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvatarImportService.class);
+
+    private final AvatarService avatarService;
+    private final StudentRepository studentRepository;
+    private final BlobStore blobStore;
+
+    private ExecutorService decodeExecutor;
+    private int decodeThreads;
+
+    @Value("${avatar.import.threads:0}")
+    private int threads;
+
+    @Value("${avatar.import.batch-size:50}")
+    private int batchSize;
+
+    @Value("${avatar.import.max-entry-size:307200}")
+    private long maxEntrySize;
+
+    public AvatarImportService(AvatarService avatarService, StudentRepository studentRepository, BlobStore blobStore) {
+        this.avatarService = avatarService;
+        this.studentRepository = studentRepository;
+        this.blobStore = blobStore;
+    }
+
+    /**
+     * An entry after decoding: either ready to save or failed with {@code error}.
+     */
+    private record Decoded(int index, AvatarService.PreparedUpload upload, String error) {
+    }
+
+    @PostConstruct
+    void startDecodeExecutor() {
+        decodeThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        decodeExecutor = Executors.newFixedThreadPool(decodeThreads, new CustomizableThreadFactory("avatar-import-"));
+    }
+
+    @PreDestroy
+    void stopDecodeExecutor() {
+        decodeExecutor.shutdown();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the archive type is not supported
+     */
+    public AvatarImportReport importArchive(MultipartFile archive) throws IOException {
+        logger.info("Invoked importArchive for file {}", archive.getOriginalFilename());
+        List<AvatarImportResult> results = new ArrayList<>();
+        CompletionService<Decoded> completion = new ExecutorCompletionService<>(decodeExecutor);
+        List<Decoded> ready = new ArrayList<>();
+        int pending = 0;
+        String archiveError = null;
+
+        try (ArchiveReader reader = ArchiveReader.open(archive.getOriginalFilename(), archive.getInputStream())) {
+            Set<Long> seen = new HashSet<>();
+            String entry;
+            while ((entry = reader.nextEntry()) != null) {
+                int index = results.size();
+                Long studentId = parseStudentId(entry);
+                results.add(new AvatarImportResult(entry, studentId, AvatarUploadStatus.PROCESSING, null));
+                if (studentId == null) {
+                    fail(results, index, "Entry name is not a student id");
+                    continue;
+                }
+                if (!seen.add(studentId)) {
+                    fail(results, index, "Duplicate entry for student");
+                    continue;
+                }
+
+                Path stagingFile = blobStore.createStagingFile();
+                String contentHash;
+                try {
+                    contentHash = stage(reader.entryStream(), stagingFile);
+                } catch (IOException e) {
+                    deleteStagingFile(stagingFile);
+                    throw e;
+                }
+                if (contentHash == null) {
+                    deleteStagingFile(stagingFile);
+                    fail(results, index, "File is too big");
+                    continue;
+                }
+                String entryName = entry;
+                completion.submit(() -> decode(index, studentId, entryName, stagingFile, contentHash));
+                pending++;
+
+                while (pending >= decodeThreads * 2) {
+                    ready.add(take(completion));
+                    pending--;
+                }
+                Future<Decoded> done;
+                while ((done = completion.poll()) != null) {
+                    ready.add(get(done));
+                    pending--;
+                }
+                if (ready.size() >= batchSize) {
+                    save(ready, results);
+                    ready.clear();
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not read avatar archive {}", archive.getOriginalFilename(), e);
+            archiveError = "Archive could not be read past entry " + results.size() + ": " + e.getMessage();
+        } finally {
+            while (pending > 0) {
+                ready.add(take(completion));
+                pending--;
+            }
+            save(ready, results);
+        }
+
+        int imported = (int) results.stream().filter(r -> r.status() == AvatarUploadStatus.COMPLETED).count();
+        logger.info("Imported {} of {} avatar entries", imported, results.size());
+        return new AvatarImportReport(imported, results.size() - imported, archiveError, results);
+    }
+
+    private Decoded decode(int index, long studentId, String entry, Path stagingFile, String contentHash) {
+        try {
+            String mediaType = MediaTypeFactory.getMediaType(entry)
+                    .map(MediaType::toString)
+                    .orElse(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            List<AvatarService.StagedRendition> renditions =
+                    avatarService.prepareRenditions(stagingFile, extensionOf(entry), contentHash);
+            return new Decoded(index, new AvatarService.PreparedUpload(studentId, stagingFile, contentHash,
+                    Files.size(stagingFile), mediaType, renditions), null);
+        } catch (Exception e) {
+            logger.warn("Could not decode avatar entry {}", entry, e);
+            deleteStagingFile(stagingFile);
+            return new Decoded(index, null, e.getMessage() != null ? e.getMessage() : "Could not decode image");
+        }
+    }
+
+    /**
+     * Saves one batch of decoded entries in a single transaction and records the outcome of each.
+     */
+    private void save(List<Decoded> batch, List<AvatarImportResult> results) {
+        List<AvatarService.PreparedUpload> uploads = new ArrayList<>(batch.size());
+        List<Integer> indexes = new ArrayList<>(batch.size());
+        for (Decoded decoded : batch) {
+            if (decoded.error() != null) {
+                fail(results, decoded.index(), decoded.error());
+            } else {
+                uploads.add(decoded.upload());
+                indexes.add(decoded.index());
+            }
+        }
+        if (uploads.isEmpty()) {
+            return;
+        }
+
+        Set<Long> existingStudents = studentRepository
+                .findAllById(uploads.stream().map(AvatarService.PreparedUpload::studentId).toList())
+                .stream().map(Student::getId).collect(Collectors.toSet());
+        List<AvatarService.PreparedUpload> found = new ArrayList<>(uploads.size());
+        List<Integer> foundIndexes = new ArrayList<>(uploads.size());
+        for (int i = 0; i < uploads.size(); i++) {
+            if (existingStudents.contains(uploads.get(i).studentId())) {
+                found.add(uploads.get(i));
+                foundIndexes.add(indexes.get(i));
+            } else {
+                fail(results, indexes.get(i), "Student not found");
+            }
+        }
+
+        try {
+            avatarService.finishUploads(found);
+            foundIndexes.forEach(index -> results.set(index, withStatus(results.get(index), AvatarUploadStatus.COMPLETED, null)));
+            logger.debug("Saved a batch of {} imported avatars", found.size());
+        } catch (Exception e) {
+            logger.error("Failed to save a batch of {} imported avatars", found.size(), e);
+            foundIndexes.forEach(index -> fail(results, index, "Could not save avatar"));
+        } finally {
+            uploads.forEach(upload -> deleteStagingFile(upload.stagingFile()));
+        }
+    }
+
+    /**
+     * Copies an entry to its staging file, hashing it on the way.
+     *
+     * @return the content hash, or {@code null} if the entry is larger than allowed
+     */
+    private String stage(InputStream in, Path stagingFile) throws IOException {
+        MessageDigest digest = ContentHashes.newDigest();
+        byte[] buffer = new byte[8192];
+        long size = 0;
+        try (OutputStream out = Files.newOutputStream(stagingFile)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                size += n;
+                if (size > maxEntrySize) {
+                    return null;
+                }
+                digest.update(buffer, 0, n);
+                out.write(buffer, 0, n);
+            }
+        }
+        return ContentHashes.toKey(digest);
+    }
+
+    /**
+     * {@code photos/42.jpg} belongs to the student with id 42.
+     */
+    private static Long parseStudentId(String entry) {
+        String name = entry.substring(entry.lastIndexOf('/') + 1);
+        int dot = name.lastIndexOf('.');
+        if (dot <= 0) {
+            return null;
+        }
+        try {
+            return Long.valueOf(name.substring(0, dot));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String extensionOf(String entry) {
+        return entry.substring(entry.lastIndexOf('.') + 1);
+    }
+
+    private static void fail(List<AvatarImportResult> results, int index, String error) {
+        results.set(index, withStatus(results.get(index), AvatarUploadStatus.FAILED, error));
+    }
+
+    private static AvatarImportResult withStatus(AvatarImportResult result, AvatarUploadStatus status, String error) {
+        return new AvatarImportResult(result.entry(), result.studentId(), status, error);
+    }
+
+    private static Decoded take(CompletionService<Decoded> completion) {
+        try {
+            return get(completion.take());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while importing avatars", e);
+        }
+    }
+
+    private static Decoded get(Future<Decoded> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while importing avatars", e);
+        } catch (ExecutionException e) {
+            // decode() catches everything it can
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static void deleteStagingFile(Path stagingFile) {
+        try {
+            Files.deleteIfExists(stagingFile);
+        } catch (IOException e) {
+            logger.warn("Could not remove staging file {}", stagingFile, e);
+        }
+    }
+}
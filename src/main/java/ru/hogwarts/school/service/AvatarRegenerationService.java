@@ -0,0 +1,241 @@
+package ru.hogwarts.school.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import ru.hogwarts.school.dto.AvatarOriginal;
+import ru.hogwarts.school.dto.RegenerationProgress;
+import ru.hogwarts.school.model.AvatarRegenerationJob;
+import ru.hogwarts.school.model.RegenerationStatus;
+import ru.hogwarts.school.repositories.AvatarRegenerationJobRepository;
+import ru.hogwarts.school.repositories.AvatarRepository;
+import ru.hogwarts.school.storage.BlobStore;
+import ru.hogwarts.school.storage.ContentHashes;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rebuilds the renditions of every stored avatar from its original, e.g. after the configured
+ * widths changed.
+ * <p>
+ * One job runs at a time. It walks avatars in id order, renders each batch on a fork-join pool
+ * sized to the cores and swaps the batch's renditions in one transaction. The last finished
+ * avatar id is checkpointed after every batch, and a job still marked running at startup
+ * resumes from its checkpoint; batches are idempotent, so redoing the last one is harmless.
+ * The job is throttled to {@code avatar.regeneration.max-per-second} so uploads and previews
+ * keep most of the CPU and the database.
+ */
+@Service
+public class AvatarRegenerationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvatarRegenerationService.class);
+
+    private final AvatarRepository avatarRepository;
+    private final AvatarRegenerationJobRepository jobRepository;
+    private final AvatarService avatarService;
+    private final AvatarRenditionService renditionService;
+    private final BlobStore blobStore;
+
+    private ExecutorService coordinator;
+
+    /** The job this instance is running, {@code null} when idle. */
+    private volatile RegenerationProgress progress;
+    private volatile boolean cancelled;
+    private volatile boolean stopping;
+
+    @Value("${avatar.regeneration.batch-size:100}")
+    private int batchSize;
+
+    @Value("${avatar.regeneration.threads:0}")
+    private int threads;
+
+    @Value("${avatar.regeneration.max-per-second:50}")
+    private double maxPerSecond;
+
+    public AvatarRegenerationService(AvatarRepository avatarRepository, AvatarRegenerationJobRepository jobRepository,
+                                     AvatarService avatarService, AvatarRenditionService renditionService,
+                                     BlobStore blobStore) {
+        this.avatarRepository = avatarRepository;
+        this.jobRepository = jobRepository;
+        this.avatarService = avatarService;
+        this.renditionService = renditionService;
+        this.blobStore = blobStore;
+    }
+
+    @PostConstruct
+    void startCoordinator() {
+        coordinator = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("avatar-regeneration-"));
+    }
+
+    @PreDestroy
+    void stopCoordinator() {
+        // the job stays RUNNING in the database and resumes on the next start
+        stopping = true;
+        coordinator.shutdown();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinishedJob() {
+        jobRepository.findFirstByStatusOrderByIdDesc(RegenerationStatus.RUNNING).ifPresent(job -> {
+            logger.info("Resuming avatar regeneration job {} after avatar id {}", job.getId(), job.getLastAvatarId());
+            launch(job);
+        });
+    }
+
+    /**
+     * Starts a new job over all avatars.
+     *
+     * @return {@code null} if a job is already running
+     */
+    public synchronized RegenerationProgress start() {
+        logger.info("Invoked start of avatar regeneration");
+        if (progress != null) {
+            return null;
+        }
+        AvatarRegenerationJob job = jobRepository.save(new AvatarRegenerationJob(avatarRepository.count()));
+        launch(job);
+        return progress;
+    }
+
+    /**
+     * Asks the running job to stop after the current batch.
+     *
+     * @return {@code false} if no job is running
+     */
+    public boolean cancel() {
+        logger.info("Invoked cancel of avatar regeneration");
+        if (progress == null) {
+            return false;
+        }
+        cancelled = true;
+        return true;
+    }
+
+    /**
+     * Progress of the running job, or of the latest one if none is running; {@code null} if
+     * no job ever ran.
+     */
+    public RegenerationProgress getProgress() {
+        RegenerationProgress current = progress;
+        if (current != null) {
+            return current;
+        }
+        return jobRepository.findFirstByOrderByIdDesc()
+                .map(job -> progressOf(job, 0, null))
+                .orElse(null);
+    }
+
+    private synchronized void launch(AvatarRegenerationJob job) {
+        cancelled = false;
+        progress = progressOf(job, 0, null);
+        coordinator.execute(() -> run(job));
+    }
+
+    private void run(AvatarRegenerationJob job) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(poolSize);
+        Instant runStartedAt = Instant.now();
+        long processedAtStart = job.getProcessed();
+        try {
+            List<AvatarOriginal> batch;
+            do {
+                Instant batchStartedAt = Instant.now();
+                batch = avatarRepository.findOriginalsAfter(job.getLastAvatarId(), Limit.of(batchSize));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                List<AvatarOriginal> originals = batch;
+                List<AvatarService.RegeneratedAvatar> regenerated = pool.submit(() -> originals.parallelStream()
+                        .map(this::regenerate)
+                        .filter(Objects::nonNull)
+                        .toList()).join();
+                avatarService.replaceRenditions(regenerated);
+
+                job.setLastAvatarId(batch.get(batch.size() - 1).id());
+                job.setProcessed(job.getProcessed() + batch.size());
+                job.setFailed(job.getFailed() + batch.size() - regenerated.size());
+                checkpoint(job, runStartedAt, processedAtStart);
+                throttle(batchStartedAt, batch.size());
+            } while (batch.size() == batchSize && !cancelled && !stopping);
+
+            if (stopping && !cancelled) {
+                return;
+            }
+            job.setStatus(cancelled ? RegenerationStatus.CANCELLED : RegenerationStatus.COMPLETED);
+            logger.info("Avatar regeneration job {} {}: {} processed, {} failed",
+                    job.getId(), job.getStatus(), job.getProcessed(), job.getFailed());
+        } catch (Exception e) {
+            logger.error("Avatar regeneration job {} failed after avatar id {}", job.getId(), job.getLastAvatarId(), e);
+            job.setStatus(RegenerationStatus.FAILED);
+        } finally {
+            pool.shutdown();
+            if (job.getStatus() != RegenerationStatus.RUNNING) {
+                checkpoint(job, runStartedAt, processedAtStart);
+            }
+            progress = null;
+        }
+    }
+
+    /**
+     * Renders one avatar, or returns {@code null} if its original cannot be read or decoded.
+     */
+    private AvatarService.RegeneratedAvatar regenerate(AvatarOriginal original) {
+        try {
+            List<AvatarService.StagedRendition> renditions = new ArrayList<>();
+            for (AvatarRenditionService.Rendition r : renditionService.render(blobStore.read(original.contentHash()),
+                    AvatarRenditionService.formatOf(original.mediaType()))) {
+                renditions.add(new AvatarService.StagedRendition(r.width(), r.height(), r.mediaType(),
+                        ContentHashes.sha256(r.data()), r.data()));
+            }
+            return new AvatarService.RegeneratedAvatar(original.id(), original.studentId(), original.contentHash(), renditions);
+        } catch (Exception e) {
+            logger.warn("Could not regenerate renditions of avatar id = {}", original.id(), e);
+            return null;
+        }
+    }
+
+    private void checkpoint(AvatarRegenerationJob job, Instant runStartedAt, long processedAtStart) {
+        job.setUpdatedAt(Instant.now());
+        jobRepository.save(job);
+        double seconds = Duration.between(runStartedAt, job.getUpdatedAt()).toMillis() / 1000.0;
+        double rate = seconds > 0 ? (job.getProcessed() - processedAtStart) / seconds : 0;
+        Long eta = rate > 0 ? (long) Math.ceil(Math.max(0, job.getTotal() - job.getProcessed()) / rate) : null;
+        progress = progressOf(job, rate, eta);
+        logger.debug("Avatar regeneration job {}: {} of {} processed, {} avatars/s",
+                job.getId(), job.getProcessed(), job.getTotal(), rate);
+    }
+
+    /**
+     * Sleeps off whatever is left of the time the batch is allowed to take at the configured rate.
+     */
+    private void throttle(Instant batchStartedAt, int batchSize) throws InterruptedException {
+        if (maxPerSecond <= 0) {
+            return;
+        }
+        long allowedMillis = (long) (batchSize * 1000 / maxPerSecond);
+        long spentMillis = Duration.between(batchStartedAt, Instant.now()).toMillis();
+        if (spentMillis < allowedMillis) {
+            TimeUnit.MILLISECONDS.sleep(allowedMillis - spentMillis);
+        }
+    }
+
+    private static RegenerationProgress progressOf(AvatarRegenerationJob job, double rate, Long eta) {
+        return new RegenerationProgress(job.getId(), job.getStatus(), job.getProcessed(), job.getFailed(), job.getTotal(),
+                job.getLastAvatarId(), rate, eta, job.getStartedAt(), job.getUpdatedAt());
+    }
+}
@@ -0,0 +1,186 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Produces the configured set of preview sizes from a single decode of the original image.
+ * <p>
+ * The original is decoded with reader-level subsampling, at no more than about twice the
+ * largest rendition width, so the raster held in memory depends on the configured widths rather
+ * than on the upload. Images above {@code avatar.rendition.max-pixels} are rejected from their
+ * header, before any pixel is decoded.
+ */
+@Service
+public class AvatarRenditionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvatarRenditionService.class);
+
+    public record Rendition(int width, int height, String mediaType, byte[] data) {
+    }
+
+    private final int[] widths;
+    private final long maxPixels;
+
+    public AvatarRenditionService(@Value("${avatar.rendition.widths:48,100,256,512}") int[] widths,
+                                  @Value("${avatar.rendition.max-pixels:40000000}") long maxPixels) {
+        this.widths = Arrays.stream(widths).filter(width -> width > 0).distinct().sorted().toArray();
+        this.maxPixels = maxPixels;
+    }
+
+    public List<Rendition> render(Path filePath, String format) throws IOException {
+        logger.debug("Generating renditions {} from file: {}", widths, filePath.getFileName());
+        try (ImageInputStream input = ImageIO.createImageInputStream(filePath.toFile())) {
+            return render(input, filePath.getFileName().toString(), format);
+        }
+    }
+
+    public List<Rendition> render(byte[] data, String format) throws IOException {
+        logger.debug("Generating renditions {} from {} bytes", widths, data.length);
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            return render(input, "image data", format);
+        }
+    }
+
+    private List<Rendition> render(ImageInputStream input, String name, String format) throws IOException {
+        Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+        if (readers == null || !readers.hasNext()) {
+            throw new IOException("Unsupported image format: " + name);
+        }
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(input, true, true);
+            return render(reader, format);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    private List<Rendition> render(ImageReader reader, String format) throws IOException {
+        int originalWidth = reader.getWidth(0);
+        int originalHeight = reader.getHeight(0);
+        if ((long) originalWidth * originalHeight > maxPixels) {
+            throw new IOException("Image of " + originalWidth + "x" + originalHeight + " exceeds " + maxPixels + " pixels");
+        }
+
+        int[] targets = targetWidths(originalWidth);
+        ImageReadParam param = reader.getDefaultReadParam();
+        int subsampling = subsampling(originalWidth, targets[targets.length - 1]);
+        param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+        BufferedImage image = reader.read(0, param);
+        logger.debug("Decoded {}x{} image at {}x{}", originalWidth, originalHeight, image.getWidth(), image.getHeight());
+
+        List<Rendition> renditions = new ArrayList<>(targets.length);
+        // Largest first, each size scaled from the previous one: cheaper than rescaling the
+        // original every time and smoother than one big bilinear step.
+        BufferedImage source = image;
+        for (int i = targets.length - 1; i >= 0; i--) {
+            BufferedImage scaled = scale(source, targets[i]);
+            renditions.add(encode(scaled, format));
+            source = scaled;
+        }
+        logger.debug("Generated {} renditions", renditions.size());
+        return renditions;
+    }
+
+    public int[] widths() {
+        return widths.clone();
+    }
+
+    /**
+     * Snaps a requested width to the closest configured one, preferring the larger on a tie.
+     */
+    public int nearestWidth(int requestedWidth) {
+        int nearest = widths[0];
+        for (int width : widths) {
+            if (Math.abs(width - requestedWidth) <= Math.abs(nearest - requestedWidth)) {
+                nearest = width;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Keeps every n-th column and row, with n chosen so the decoded image stays at least twice as wide as
+     * the largest rendition; the bilinear steps that follow smooth out the skipped pixels.
+     */
+    static int subsampling(int originalWidth, int largestTarget) {
+        return Math.max(1, originalWidth / (2 * largestTarget));
+    }
+
+    /**
+     * Configured widths that do not upscale the original; an image narrower than every
+     * configured width gets a single rendition at its own width.
+     */
+    int[] targetWidths(int originalWidth) {
+        int[] targets = Arrays.stream(widths).filter(width -> width <= originalWidth).toArray();
+        return targets.length == 0 ? new int[]{originalWidth} : targets;
+    }
+
+    private BufferedImage scale(BufferedImage source, int width) {
+        int height = Math.max(1, (int) Math.round((double) source.getHeight() * width / source.getWidth()));
+        int type = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage scaled = new BufferedImage(width, height, type);
+        Graphics2D graphics2D = scaled.createGraphics();
+        graphics2D.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics2D.drawImage(source, 0, 0, width, height, null);
+        graphics2D.dispose();
+        return scaled;
+    }
+
+    private Rendition encode(BufferedImage image, String format) throws IOException {
+        // JPEG has no alpha channel, transparent sources are kept as PNG
+        String targetFormat = image.getColorModel().hasAlpha() ? "png" : format;
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, targetFormat, baos)) {
+            targetFormat = "png";
+            baos.reset();
+            ImageIO.write(image, targetFormat, baos);
+        }
+        return new Rendition(image.getWidth(), image.getHeight(), mediaTypeOf(targetFormat), baos.toByteArray());
+    }
+
+    /**
+     * Image format to render a stored original in, from its media type; PNG when it is unknown.
+     */
+    static String formatOf(String mediaType) {
+        if (mediaType == null) {
+            return "png";
+        }
+        try {
+            return MediaType.parseMediaType(mediaType).getSubtype();
+        } catch (IllegalArgumentException e) {
+            return "png";
+        }
+    }
+
+    private String mediaTypeOf(String format) {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (writers.hasNext()) {
+            String[] mimeTypes = writers.next().getOriginatingProvider().getMIMETypes();
+            if (mimeTypes != null && mimeTypes.length > 0) {
+                return mimeTypes[0];
+            }
+        }
+        return "image/" + format;
+    }
+}
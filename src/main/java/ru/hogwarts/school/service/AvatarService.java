@@ -1,74 +1,561 @@
 package ru.hogwarts.school.service;
 
-import jakarta.transaction.Transactional;
-import jakarta.validation.Valid;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.data.domain.Page;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import ru.hogwarts.school.cache.BoundedCache;
+import ru.hogwarts.school.cache.CacheStats;
+import ru.hogwarts.school.dto.AvatarPreview;
+import ru.hogwarts.school.dto.AvatarSummary;
+import ru.hogwarts.school.dto.CursorPage;
 import ru.hogwarts.school.model.Avatar;
-import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.model.AvatarRendition;
+import ru.hogwarts.school.model.AvatarUploadStatus;
+import ru.hogwarts.school.repositories.AvatarRenditionRepository;
 import ru.hogwarts.school.repositories.AvatarRepository;
 import ru.hogwarts.school.repositories.StudentRepository;
+import ru.hogwarts.school.storage.BlobRegion;
+import ru.hogwarts.school.storage.BlobStore;
+import ru.hogwarts.school.storage.ContentHashes;
 
-import javax.imageio.ImageIO;
-import java.awt.*;
-import java.awt.image.BufferedImage;
-import java.awt.print.Pageable;
-import java.io.*;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
-import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.WRITE;
 
 
 @Service
-@Transactional
 public class AvatarService {
 
     private static final Logger logger = LoggerFactory.getLogger(AvatarService.class);
 
     private final AvatarRepository avatarRepository;
+    private final AvatarRenditionRepository renditionRepository;
     private final StudentRepository studentRepository;
+    private final AvatarRenditionService renditionService;
+    private final BlobStore blobStore;
+    private final BlobReferenceService blobReferenceService;
+    private final TransactionTemplate transactionTemplate;
 
-    @Value("${path.to.avatars.folder}")
-    private String avatarsDir;
+    private final Map<Long, UploadState> uploadStatuses = new ConcurrentHashMap<>();
 
-    public AvatarService(AvatarRepository avatarRepository, StudentRepository studentRepository) {
+    private ThreadPoolExecutor previewExecutor;
+
+    private BoundedCache<PreviewKey, AvatarPreview> previewCache;
+
+    @Value("${avatar.preview.threads:2}")
+    private int previewThreads;
+
+    @Value("${avatar.preview.queue-capacity:64}")
+    private int previewQueueCapacity;
+
+    @Value("${avatar.rendition.default-width:100}")
+    private int defaultPreviewWidth;
+
+    @Value("${avatar.listing.max-page-size:100}")
+    private int maxPageSize;
+
+    @Value("${avatar.preview.cache.max-bytes:16777216}")
+    private long previewCacheMaxBytes;
+
+    @Value("${avatar.upload-status.ttl:PT1H}")
+    private Duration uploadStatusTtl;
+
+    private record PreviewKey(long studentId, int width) {
+    }
+
+    /**
+     * The latest upload of a student that has not completed, identified by its content hash so
+     * that an earlier upload finishing late cannot overwrite it. Completed uploads are dropped,
+     * their status is read from the stored avatar.
+     */
+    private record UploadState(String contentHash, AvatarUploadStatus status, long since) {
+    }
+
+    /**
+     * A rendition about to be attached to an avatar; {@code data} is {@code null} when the blob
+     * is reused from another avatar with the same content.
+     */
+    record StagedRendition(int width, int height, String mediaType, String key, byte[] data) {
+    }
+
+    /**
+     * An upload staged on disk together with its renditions, ready to be attached to the student.
+     */
+    record PreparedUpload(long studentId, Path stagingFile, String contentHash, long fileSize, String mediaType,
+                          List<StagedRendition> renditions) {
+    }
+
+    /**
+     * Renditions regenerated from the stored original {@code contentHash} of an avatar.
+     */
+    record RegeneratedAvatar(long avatarId, long studentId, String contentHash, List<StagedRendition> renditions) {
+    }
+
+    public AvatarService(AvatarRepository avatarRepository, AvatarRenditionRepository renditionRepository,
+                         StudentRepository studentRepository, AvatarRenditionService renditionService,
+                         BlobStore blobStore, BlobReferenceService blobReferenceService,
+                         TransactionTemplate transactionTemplate) {
         this.avatarRepository = avatarRepository;
+        this.renditionRepository = renditionRepository;
         this.studentRepository = studentRepository;
+        this.renditionService = renditionService;
+        this.blobStore = blobStore;
+        this.blobReferenceService = blobReferenceService;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @PostConstruct
+    void startPreviewExecutor() {
+        // Bounded queue with AbortPolicy: when previews pile up the upload is rejected instead of
+        // queueing unbounded work in memory.
+        previewExecutor = new ThreadPoolExecutor(previewThreads, previewThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(previewQueueCapacity), new CustomizableThreadFactory("avatar-preview-"),
+                new ThreadPoolExecutor.AbortPolicy());
     }
 
-    public void uploadAvatar(Long studentId, MultipartFile avatarFile) throws IOException {
+    @PostConstruct
+    void createPreviewCache() {
+        // the record and key overhead is small next to the image bytes, but not zero
+        previewCache = new BoundedCache<>(previewCacheMaxBytes, preview -> preview.data().length + 128L);
+    }
+
+    @PreDestroy
+    void stopPreviewExecutor() {
+        previewExecutor.shutdown();
+    }
+
+    /**
+     * Stages the uploaded file, hashing it on the way. Content that is already stored is linked
+     * to the student right away, reusing its renditions; anything else gets its renditions
+     * generated on the preview worker pool. No transaction is held while the file is copied or
+     * scaled: the avatar row is written by {@link #finishUploads} at the very end.
+     *
+     * @throws EntityNotFoundException            if the student does not exist
+     * @throws java.util.concurrent.RejectedExecutionException if the preview queue is full
+     */
+    public AvatarUploadStatus uploadAvatar(Long studentId, MultipartFile avatarFile) throws IOException {
         logger.info("Invoked uploadAvatar for studentId = {}", studentId);
-        Student student = studentRepository.getReferenceById(studentId);
+        if (!studentRepository.existsById(studentId)) {
+            throw new EntityNotFoundException("Student with id " + studentId + " not found");
+        }
 
-        Path filePath = Path.of(avatarsDir, studentId + "." + getExtension(avatarFile.getOriginalFilename()));
-        Files.createDirectories(filePath.getParent());
-        Files.deleteIfExists(filePath);
-        logger.debug("Saving avatar to file path: {}", filePath);
+        String format = getExtension(avatarFile.getOriginalFilename());
+        Path stagingFile = blobStore.createStagingFile();
+        logger.debug("Staging avatar upload in file: {}", stagingFile);
+        String contentHash;
+        try {
+            contentHash = writeToFile(avatarFile, stagingFile);
+        } catch (IOException e) {
+            Files.deleteIfExists(stagingFile);
+            throw e;
+        }
+        logger.info("Avatar file saved successfully for studentId = {}", studentId);
+
+        long fileSize = avatarFile.getSize();
+        String mediaType = avatarFile.getContentType();
+        uploadStatuses.put(studentId, new UploadState(contentHash, AvatarUploadStatus.PROCESSING, System.nanoTime()));
+        List<StagedRendition> reusable = findReusableRenditions(contentHash);
+        if (!reusable.isEmpty()) {
+            logger.info("Avatar of studentId = {} is already stored as {}, reusing it", studentId, contentHash);
+            try {
+                finishUploads(List.of(new PreparedUpload(studentId, stagingFile, contentHash, fileSize, mediaType, reusable)));
+            } catch (IOException | RuntimeException e) {
+                markFailed(studentId, contentHash);
+                throw e;
+            } finally {
+                Files.deleteIfExists(stagingFile);
+            }
+            return AvatarUploadStatus.COMPLETED;
+        }
+
+        try {
+            previewExecutor.execute(() -> renderAndFinish(studentId, stagingFile, format, contentHash, fileSize, mediaType));
+        } catch (RuntimeException e) {
+            Files.deleteIfExists(stagingFile);
+            markFailed(studentId, contentHash);
+            throw e;
+        }
+        return AvatarUploadStatus.PROCESSING;
+    }
+
+    /**
+     * Removes the student's avatar; blobs no other avatar uses are deleted with it.
+     *
+     * @return {@code false} if the student has no avatar
+     */
+    public boolean deleteAvatar(Long studentId) {
+        logger.info("Invoked deleteAvatar for studentId = {}", studentId);
+        Boolean deleted = transactionTemplate.execute(status -> {
+            Optional<Avatar> avatar = avatarRepository.findByStudentId(studentId);
+            if (avatar.isEmpty()) {
+                return false;
+            }
+            List<String> releasedKeys = detachBlobs(List.of(avatar.get()));
+            avatarRepository.delete(avatar.get());
+            releasedKeys.forEach(blobReferenceService::release);
+            return true;
+        });
+        invalidatePreviews(studentId);
+        uploadStatuses.remove(studentId);
+        return Boolean.TRUE.equals(deleted);
+    }
+
+    /**
+     * Returns the state of the latest upload for the student, falling back to the stored avatar
+     * for uploads made before the last restart. Returns {@code null} if the student never uploaded one.
+     */
+    public AvatarUploadStatus getUploadStatus(Long studentId) {
+        logger.debug("Invoked getUploadStatus for studentId = {}", studentId);
+        UploadState state = uploadStatuses.get(studentId);
+        if (state != null && !isExpired(state, System.nanoTime())) {
+            return state.status();
+        }
+        return avatarRepository.findByStudentId(studentId).isPresent() ? AvatarUploadStatus.COMPLETED : null;
+    }
+
+    /**
+     * Forgets upload states older than {@code avatar.upload-status.ttl}, which are mostly failures
+     * nobody asked about.
+     */
+    @Scheduled(initialDelayString = "${avatar.upload-status.ttl:PT1H}", fixedDelayString = "${avatar.upload-status.ttl:PT1H}")
+    public void expireUploadStatuses() {
+        long now = System.nanoTime();
+        uploadStatuses.values().removeIf(state -> isExpired(state, now));
+    }
+
+    private boolean isExpired(UploadState state, long now) {
+        return now - state.since() >= uploadStatusTtl.toNanos();
+    }
+
+    /**
+     * Drops the student's upload state if it still belongs to this upload.
+     */
+    private void markCompleted(long studentId, String contentHash) {
+        uploadStatuses.computeIfPresent(studentId, (id, state) -> state.contentHash().equals(contentHash) ? null : state);
+    }
+
+    private void markFailed(long studentId, String contentHash) {
+        uploadStatuses.computeIfPresent(studentId, (id, state) -> state.contentHash().equals(contentHash)
+                ? new UploadState(contentHash, AvatarUploadStatus.FAILED, System.nanoTime())
+                : state);
+    }
+
+    private String writeToFile(MultipartFile avatarFile, Path target) throws IOException {
+        long size = avatarFile.getSize();
+        MessageDigest digest = ContentHashes.newDigest();
         try (
-                InputStream is = avatarFile.getInputStream();
-                OutputStream os = Files.newOutputStream(filePath, CREATE_NEW);
-                BufferedInputStream bis = new BufferedInputStream(is, 1024);
-                BufferedOutputStream bos = new BufferedOutputStream(os, 1024)
+                ReadableByteChannel in = Channels.newChannel(new DigestInputStream(avatarFile.getInputStream(), digest));
+                FileChannel out = FileChannel.open(target, WRITE)
         ) {
-            bis.transferTo(bos);
-            logger.info("Avatar file saved successfully for studentId = {}", studentId);
+            long position = 0;
+            while (position < size) {
+                long transferred = out.transferFrom(in, position, size - position);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+            }
         }
+        return ContentHashes.toKey(digest);
+    }
+
+    /**
+     * Reuses the renditions of an avatar with the same content when there is one, otherwise
+     * decodes and scales the staged file.
+     */
+    List<StagedRendition> prepareRenditions(Path stagingFile, String format, String contentHash) throws IOException {
+        List<StagedRendition> reusable = findReusableRenditions(contentHash);
+        if (!reusable.isEmpty()) {
+            return reusable;
+        }
+        List<StagedRendition> renditions = new ArrayList<>();
+        for (AvatarRenditionService.Rendition r : renditionService.render(stagingFile, format)) {
+            renditions.add(new StagedRendition(r.width(), r.height(), r.mediaType(), ContentHashes.sha256(r.data()), r.data()));
+        }
+        return renditions;
+    }
 
-        Avatar avatar = findAvatar(studentId);
-        avatar.setStudent(student);
-        avatar.setFilepath(filePath.toString());
-        avatar.setFileSize(avatarFile.getSize());
-        avatar.setMediaType(avatarFile.getContentType());
-        avatar.setData(generateDataForDB(filePath));
-        logger.debug("Saving avatar entity to database for studentId = {}", studentId);
-        avatarRepository.save(avatar);
+    /**
+     * Renditions of another avatar with the same content, if all of their blobs are still stored.
+     */
+    private List<StagedRendition> findReusableRenditions(String contentHash) {
+        List<AvatarRendition> renditions = avatarRepository.findFirstByContentHashOrderById(contentHash)
+                .map(avatar -> renditionRepository.findByAvatarIdOrderByWidth(avatar.getId()))
+                .orElse(List.of());
+        if (!blobReferenceService.isStored(contentHash)
+                || !renditions.stream().allMatch(r -> r.getBlobKey() != null && blobReferenceService.isStored(r.getBlobKey()))) {
+            return List.of();
+        }
+        return renditions.stream()
+                .map(r -> new StagedRendition(r.getWidth(), r.getHeight(), r.getMediaType(), r.getBlobKey(), null))
+                .toList();
+    }
+
+    private void renderAndFinish(Long studentId, Path stagingFile, String format, String contentHash,
+                                 long fileSize, String mediaType) {
+        try {
+            List<StagedRendition> renditions = prepareRenditions(stagingFile, format, contentHash);
+            finishUploads(List.of(new PreparedUpload(studentId, stagingFile, contentHash, fileSize, mediaType, renditions)));
+        } catch (Exception e) {
+            logger.error("Failed to process avatar for studentId = {}", studentId, e);
+            markFailed(studentId, contentHash);
+        } finally {
+            try {
+                Files.deleteIfExists(stagingFile);
+            } catch (IOException e) {
+                logger.warn("Could not remove staging file {}", stagingFile, e);
+            }
+        }
+    }
+
+    /**
+     * Counts references to the new blobs, stores the blobs, then points the students' avatars at
+     * them in one short transaction. Blobs the previous avatars used are released. Rows are written
+     * with JDBC batching, so a bulk import costs a handful of round trips per batch.
+     * <p>
+     * Counting first means no delete can collect a blob between it being stored and the avatar
+     * row being committed, and no avatar row is ever committed before its blob is in the store. If
+     * storing or writing the rows fails, the counts are released again and the blobs nothing else
+     * uses are collected.
+     * <p>
+     * Staging files are moved into the store; whatever is left of them is up to the caller.
+     * Every student must exist and appear only once.
+     * <p>
+     * A reused rendition blob is only checked for before its new reference is counted, so a
+     * concurrent delete may have collected it in between. Once the counts are committed nothing
+     * can collect it anymore, so it is checked again then and the renditions of that avatar are
+     * rendered again from the original if any of them is gone.
+     */
+    void finishUploads(List<PreparedUpload> uploads) throws IOException {
+        if (uploads.isEmpty()) {
+            return;
+        }
+        List<String> keys = new ArrayList<>();
+        for (PreparedUpload upload : uploads) {
+            keys.add(upload.contentHash());
+            upload.renditions().forEach(r -> keys.add(r.key()));
+        }
+        // a fixed order, so that concurrent batches lock the count rows without deadlocking
+        keys.sort(null);
+        transactionTemplate.executeWithoutResult(status -> keys.forEach(blobReferenceService::retain));
+
+        List<Long> avatarIds;
+        try {
+            for (PreparedUpload upload : uploads) {
+                blobReferenceService.store(upload.contentHash(), upload.stagingFile());
+                for (StagedRendition rendition : upload.renditions()) {
+                    if (rendition.data() != null) {
+                        blobReferenceService.store(rendition.data());
+                    }
+                }
+            }
+            logger.debug("Saving {} avatar entities to database", uploads.size());
+            avatarIds = transactionTemplate.execute(status -> saveAvatars(uploads));
+        } catch (IOException | RuntimeException e) {
+            transactionTemplate.executeWithoutResult(status -> keys.forEach(blobReferenceService::release));
+            throw e;
+        }
+
+        for (int i = 0; i < uploads.size(); i++) {
+            PreparedUpload upload = uploads.get(i);
+            boolean reusedBlobMissing = upload.renditions().stream()
+                    .anyMatch(rendition -> rendition.data() == null && !blobReferenceService.isStored(rendition.key()));
+            if (reusedBlobMissing) {
+                renderAgain(avatarIds.get(i), upload);
+            }
+            invalidatePreviews(upload.studentId());
+            markCompleted(upload.studentId(), upload.contentHash());
+        }
+    }
+
+    /**
+     * Points the students' avatars at the uploaded blobs, whose references are already counted,
+     * and releases the blobs of the avatars they replace.
+     *
+     * @return the avatar id of every upload, in order
+     */
+    private List<Long> saveAvatars(List<PreparedUpload> uploads) {
+        Map<Long, Avatar> existing = new HashMap<>();
+        avatarRepository.findByStudentIdIn(uploads.stream().map(PreparedUpload::studentId).toList())
+                .forEach(avatar -> existing.put(avatar.getStudent().getId(), avatar));
+        List<String> releasedKeys = detachBlobs(List.copyOf(existing.values()));
+
+        List<Avatar> avatars = new ArrayList<>(uploads.size());
+        for (PreparedUpload upload : uploads) {
+            Avatar avatar = existing.getOrDefault(upload.studentId(), new Avatar());
+            avatar.setStudent(studentRepository.getReferenceById(upload.studentId()));
+            avatar.setFileSize(upload.fileSize());
+            avatar.setMediaType(upload.mediaType());
+            avatar.setContentHash(upload.contentHash());
+            avatar.setUpdatedAt(Instant.now());
+            avatars.add(avatar);
+        }
+        List<Avatar> saved = avatarRepository.saveAll(avatars);
+
+        List<AvatarRendition> renditions = new ArrayList<>();
+        for (int i = 0; i < uploads.size(); i++) {
+            for (StagedRendition r : uploads.get(i).renditions()) {
+                renditions.add(new AvatarRendition(saved.get(i), r.width(), r.height(), r.mediaType(), r.key()));
+            }
+        }
+        renditionRepository.saveAll(renditions);
+        releasedKeys.forEach(blobReferenceService::release);
+        return saved.stream().map(Avatar::getId).toList();
+    }
+
+    private void renderAgain(long avatarId, PreparedUpload upload) throws IOException {
+        logger.warn("Reused renditions of avatar id = {} were deleted meanwhile, rendering them again", avatarId);
+        List<StagedRendition> renditions = new ArrayList<>();
+        for (AvatarRenditionService.Rendition r : renditionService.render(blobStore.read(upload.contentHash()),
+                AvatarRenditionService.formatOf(upload.mediaType()))) {
+            renditions.add(new StagedRendition(r.width(), r.height(), r.mediaType(), ContentHashes.sha256(r.data()), r.data()));
+        }
+        replaceRenditions(List.of(new RegeneratedAvatar(avatarId, upload.studentId(), upload.contentHash(), renditions)));
+    }
+
+    /**
+     * Swaps in regenerated renditions in one transaction. Avatars whose original was replaced or
+     * removed since it was read are left alone.
+     *
+     * @return how many avatars got their renditions replaced
+     */
+    int replaceRenditions(List<RegeneratedAvatar> regenerated) throws IOException {
+        if (regenerated.isEmpty()) {
+            return 0;
+        }
+        List<RegeneratedAvatar> replaced = transactionTemplate.execute(status -> {
+            Map<Long, String> currentHashes = new HashMap<>();
+            avatarRepository.findOriginalsByIdIn(regenerated.stream().map(RegeneratedAvatar::avatarId).toList())
+                    .forEach(original -> currentHashes.put(original.id(), original.contentHash()));
+            List<RegeneratedAvatar> unchanged = regenerated.stream()
+                    .filter(avatar -> avatar.contentHash().equals(currentHashes.get(avatar.avatarId())))
+                    .toList();
+            if (unchanged.isEmpty()) {
+                return unchanged;
+            }
+
+            List<Long> avatarIds = unchanged.stream().map(RegeneratedAvatar::avatarId).toList();
+            List<String> releasedKeys = renditionRepository.findByAvatarIdIn(avatarIds).stream()
+                    .map(AvatarRendition::getBlobKey)
+                    .filter(Objects::nonNull)
+                    .toList();
+            renditionRepository.deleteByAvatarIdIn(avatarIds);
+
+            List<AvatarRendition> renditions = new ArrayList<>();
+            for (RegeneratedAvatar avatar : unchanged) {
+                Avatar reference = avatarRepository.getReferenceById(avatar.avatarId());
+                for (StagedRendition r : avatar.renditions()) {
+                    renditions.add(new AvatarRendition(reference, r.width(), r.height(), r.mediaType(), r.key()));
+                    blobReferenceService.retain(r.key());
+                }
+            }
+            renditionRepository.saveAll(renditions);
+            releasedKeys.forEach(blobReferenceService::release);
+            return unchanged;
+        });
+
+        for (RegeneratedAvatar avatar : replaced) {
+            for (StagedRendition rendition : avatar.renditions()) {
+                blobReferenceService.store(rendition.data());
+            }
+            invalidatePreviews(avatar.studentId());
+        }
+        return replaced.size();
+    }
+
+    /**
+     * Deletes the avatars' rendition rows and returns every blob key the avatars referenced.
+     */
+    private List<String> detachBlobs(List<Avatar> avatars) {
+        List<String> keys = new ArrayList<>();
+        if (avatars.isEmpty()) {
+            return keys;
+        }
+        List<Long> avatarIds = avatars.stream().map(Avatar::getId).toList();
+        avatars.forEach(avatar -> keys.add(avatar.getContentHash()));
+        renditionRepository.findByAvatarIdIn(avatarIds).forEach(rendition -> keys.add(rendition.getBlobKey()));
+        renditionRepository.deleteByAvatarIdIn(avatarIds);
+        keys.removeIf(Objects::isNull);
+        return keys;
+    }
+
+    /**
+     * Returns the stored rendition whose width is closest to the requested one (the default
+     * preview width when none is given), or {@code null} if the student has no avatar.
+     * Requested widths are snapped to the configured rendition widths, which is also the cache key.
+     */
+    public AvatarPreview findPreview(Long studentId, Integer width) throws IOException {
+        int requestedWidth = renditionService.nearestWidth(width == null ? defaultPreviewWidth : width);
+        logger.debug("Invoked findPreview for studentId = {}, width = {}", studentId, requestedWidth);
+        PreviewKey key = new PreviewKey(studentId, requestedWidth);
+        AvatarPreview cached = previewCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        long generation = previewCache.generation();
+        List<AvatarRendition> nearest = renditionRepository.findNearestByStudentId(studentId, requestedWidth, Limit.of(1));
+        if (nearest.isEmpty()) {
+            return null;
+        }
+        AvatarRendition rendition = nearest.get(0);
+        AvatarPreview preview;
+        try {
+            preview = new AvatarPreview(rendition.getBlobKey(), rendition.getMediaType(),
+                    blobStore.read(rendition.getBlobKey()));
+        } catch (NoSuchFileException e) {
+            // the row is committed just before its blob is stored
+            logger.warn("Rendition blob {} of studentId = {} is not stored yet", rendition.getBlobKey(), studentId);
+            return null;
+        }
+        previewCache.putIfGeneration(key, preview, generation);
+        return preview;
+    }
+
+    public CacheStats getPreviewCacheStats() {
+        return previewCache.stats();
+    }
+
+    private void invalidatePreviews(long studentId) {
+        for (int width : renditionService.widths()) {
+            previewCache.invalidate(new PreviewKey(studentId, width));
+        }
+    }
+
+    /**
+     * Returns where the original upload is stored, for streaming it straight from disk.
+     */
+    public BlobRegion locateOriginal(Avatar avatar) throws IOException {
+        return blobStore.locate(avatar.getContentHash());
     }
 
     public Avatar findAvatar(Long studentId) {
@@ -80,35 +567,24 @@ public class AvatarService {
                 });
     }
 
-    private byte[] generateDataForDB(Path filePath) throws IOException {
-        logger.debug("Generating preview image for DB from file: {}", filePath.getFileName());
-        try (
-                InputStream is = Files.newInputStream(filePath);
-                BufferedInputStream bis = new BufferedInputStream(is, 1024);
-                ByteArrayOutputStream baos = new ByteArrayOutputStream()
-        ) {
-            BufferedImage image = ImageIO.read(bis);
-            int height = image.getHeight() / (image.getWidth() / 100);
-            BufferedImage preview = new BufferedImage(100, height, image.getType());
-            Graphics2D graphics2D = preview.createGraphics();
-            graphics2D.drawImage(image, 0, 0, 100, height, null);
-            graphics2D.dispose(); // Very important to dispose graphics
-
-            ImageIO.write(preview, getExtension(filePath.getFileName().toString()), baos);
-            logger.debug("Preview image generated and converted to byte array");
-            return baos.toByteArray();
-        }
-    }
-
     private String getExtension(String fileName) {
         String ext = fileName.substring(fileName.lastIndexOf(".") + 1);
         logger.debug("Extracted file extension: {}", ext);
         return ext;
     }
 
-    public List<Avatar> getAvatarsPaginated(int page, int size) {
-        logger.info("Invoked getAvatarsPaginated with page = {}, size = {}", page, size);
-        PageRequest pageRequest = PageRequest.of(page - 1, size);
-        return avatarRepository.findAll(pageRequest).getContent();
+    /**
+     * Lists avatar metadata ordered by id, starting after the given avatar id.
+     * Each page is an index range scan on the primary key, however deep it is.
+     */
+    public CursorPage<AvatarSummary> getAvatarsPage(Long afterId, int size) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+        logger.info("Invoked getAvatarsPage with afterId = {}, size = {}", afterId, pageSize);
+        List<AvatarSummary> avatars = avatarRepository.findSummariesAfter(afterId == null ? 0 : afterId, Limit.of(pageSize + 1));
+        if (avatars.size() <= pageSize) {
+            return new CursorPage<>(avatars, null);
+        }
+        List<AvatarSummary> page = avatars.subList(0, pageSize);
+        return new CursorPage<>(page, String.valueOf(page.get(pageSize - 1).id()));
     }
 }
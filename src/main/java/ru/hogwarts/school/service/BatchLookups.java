@@ -0,0 +1,60 @@
+package ru.hogwarts.school.service;
+
+import ru.hogwarts.school.dto.BatchLookup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Shared steps of the multi-get endpoints, which load many ids with one {@code IN} query.
+ */
+final class BatchLookups {
+
+    /** One query's worth of ids, well under the PostgreSQL bind parameter limit. */
+    static final int MAX_IDS = 1000;
+
+    private BatchLookups() {
+    }
+
+    /**
+     * The requested ids without repeats, in the order they were first requested.
+     *
+     * @throws IllegalArgumentException if more than {@link #MAX_IDS} distinct ids are requested
+     */
+    static List<Long> distinct(List<Long> ids) {
+        List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        if (distinct.size() > MAX_IDS) {
+            throw new IllegalArgumentException("At most " + MAX_IDS + " ids can be requested at once, got " + distinct.size());
+        }
+        return distinct;
+    }
+
+    /**
+     * Puts the loaded rows back in request order, converted by {@code mapper}, and lists the
+     * ids nothing was loaded for.
+     */
+    static <E, T> BatchLookup<T> inRequestOrder(List<Long> ids, Collection<E> loaded, ToLongFunction<E> idOf,
+                                                Function<E, T> mapper) {
+        Map<Long, E> byId = new HashMap<>(loaded.size() * 2);
+        for (E row : loaded) {
+            byId.put(idOf.applyAsLong(row), row);
+        }
+        List<T> items = new ArrayList<>(loaded.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            E row = byId.get(id);
+            if (row == null) {
+                missing.add(id);
+            } else {
+                items.add(mapper.apply(row));
+            }
+        }
+        return new BatchLookup<>(items, missing);
+    }
+}
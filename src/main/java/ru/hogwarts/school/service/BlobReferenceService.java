@@ -0,0 +1,108 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.repositories.BlobReferenceRepository;
+import ru.hogwarts.school.storage.BlobStore;
+import ru.hogwarts.school.storage.ContentHashes;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Reference counting for blob store keys shared by several avatars.
+ * <p>
+ * Counts change inside the caller's transaction. Blob files are written after that transaction
+ * commits and deleted only once the count reaches zero, both under a per-key lock, so a
+ * concurrent upload of the same content can never lose its file to a delete.
+ */
+@Service
+public class BlobReferenceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlobReferenceService.class);
+
+    private static final int LOCK_STRIPES = 64;
+
+    private final BlobReferenceRepository blobReferenceRepository;
+    private final BlobStore blobStore;
+    private final TransactionTemplate newTransaction;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public BlobReferenceService(BlobReferenceRepository blobReferenceRepository, BlobStore blobStore,
+                                PlatformTransactionManager transactionManager) {
+        this.blobReferenceRepository = blobReferenceRepository;
+        this.blobStore = blobStore;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * Counts one more reference. Must run inside the transaction that stores the reference.
+     */
+    public void retain(String key) {
+        blobReferenceRepository.increment(key);
+    }
+
+    /**
+     * Drops one reference. Must run inside the transaction that removes the reference;
+     * the blob is deleted after commit if nothing points at it anymore.
+     */
+    public void release(String key) {
+        blobReferenceRepository.decrement(key);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                collect(key);
+            }
+        });
+    }
+
+    /**
+     * Moves a staging file into the store unless the blob is already there.
+     */
+    public void store(String key, Path stagingFile) throws IOException {
+        synchronized (lockFor(key)) {
+            blobStore.putFile(stagingFile, key);
+        }
+    }
+
+    public void store(byte[] data) throws IOException {
+        synchronized (lockFor(ContentHashes.sha256(data))) {
+            blobStore.put(data);
+        }
+    }
+
+    public boolean isStored(String key) {
+        synchronized (lockFor(key)) {
+            return blobStore.exists(key);
+        }
+    }
+
+    private void collect(String key) {
+        synchronized (lockFor(key)) {
+            Integer deleted = newTransaction.execute(status -> blobReferenceRepository.deleteUnreferenced(key));
+            if (deleted == null || deleted == 0) {
+                return;
+            }
+            try {
+                blobStore.delete(key);
+                logger.debug("Deleted unreferenced blob {}", key);
+            } catch (IOException e) {
+                logger.warn("Could not delete unreferenced blob {}", key, e);
+            }
+        }
+    }
+
+    private Object lockFor(String key) {
+        return locks[Math.floorMod(key.hashCode(), LOCK_STRIPES)];
+    }
+}
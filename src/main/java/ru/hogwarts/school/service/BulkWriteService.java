@@ -0,0 +1,465 @@
+package ru.hogwarts.school.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.dto.BulkFaculty;
+import ru.hogwarts.school.dto.BulkRowError;
+import ru.hogwarts.school.dto.BulkStudent;
+import ru.hogwarts.school.dto.BulkWriteProgress;
+import ru.hogwarts.school.dto.BulkWriteReport;
+import ru.hogwarts.school.dto.RowFormat;
+import ru.hogwarts.school.dto.StudentName;
+import ru.hogwarts.school.event.FacultyChangedEvent;
+import ru.hogwarts.school.event.FacultySnapshot;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.event.StudentSnapshot;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repositories.FacultyRepository;
+import ru.hogwarts.school.repositories.StudentRepository;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Creates and replaces students and faculties from a JSON array, NDJSON or CSV body.
+ * <p>
+ * The body is parsed one row at a time and written in chunks of {@code bulk.chunk-size} rows,
+ * one transaction per chunk; the next rows are only parsed once a chunk is committed, so a slow
+ * database slows the upload down instead of filling the heap. Ids come from pooled sequences, so
+ * inserts and updates reach the database as JDBC batches.
+ * <p>
+ * Rows are checked before they are written: required fields and the minimum age up front, then
+ * name uniqueness and faculty references against what one query per chunk loads. If a chunk
+ * still fails in the database, it is rolled back and its rows are retried one transaction each,
+ * so only the offending rows are reported and the rest of the chunk is still written.
+ */
+@Service
+public class BulkWriteService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkWriteService.class);
+
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    private static final Consumer<BulkWriteProgress> NO_PROGRESS = progress -> {
+    };
+
+    private final StudentRepository studentRepository;
+    private final FacultyRepository facultyRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+
+    @Value("${bulk.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${student.min-age:16}")
+    private int minAge;
+
+    public BulkWriteService(StudentRepository studentRepository, FacultyRepository facultyRepository,
+                            EntityManager entityManager, TransactionTemplate transactionTemplate,
+                            ApplicationEventPublisher eventPublisher, ObjectMapper objectMapper) {
+        this.studentRepository = studentRepository;
+        this.facultyRepository = facultyRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+    }
+
+    public BulkWriteReport writeStudents(InputStream body) {
+        logger.info("Invoked method to bulk write students");
+        return write(body, input -> jsonRows(input, BulkStudent.class), StudentWriter::new, NO_PROGRESS);
+    }
+
+    public BulkWriteReport writeFaculties(InputStream body) {
+        logger.info("Invoked method to bulk write faculties");
+        return write(body, input -> jsonRows(input, BulkFaculty.class), FacultyWriter::new, NO_PROGRESS);
+    }
+
+    /**
+     * Imports students and reports to {@code output} as NDJSON: one {@link BulkWriteProgress}
+     * line per committed chunk, then the {@link BulkWriteReport} as the last line.
+     */
+    public void importStudents(InputStream body, RowFormat format, OutputStream output) throws IOException {
+        logger.info("Invoked method to import students from {}", format);
+        RowSourceFactory<BulkStudent> rows = format == RowFormat.CSV
+                ? StudentCsvReader::new
+                : input -> jsonRows(input, BulkStudent.class);
+        try {
+            BulkWriteReport report = write(body, rows, StudentWriter::new, progress -> writeLine(output, progress));
+            writeLine(output, report);
+        } catch (UncheckedIOException e) {
+            // most often the client went away; the chunks written so far stay written
+            throw e.getCause();
+        }
+    }
+
+    private void writeLine(OutputStream output, Object value) {
+        try {
+            output.write(objectMapper.writeValueAsBytes(value));
+            output.write('\n');
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowSourceFactory<R> {
+        RowSource<R> open(InputStream body) throws IOException;
+    }
+
+    /**
+     * Reads a top-level JSON array or whitespace-separated values such as NDJSON.
+     */
+    private <R> RowSource<R> jsonRows(InputStream body, Class<R> rowType) throws IOException {
+        MappingIterator<R> values = objectMapper.readerFor(rowType).readValues(body);
+        return new RowSource<>() {
+            @Override
+            public boolean hasNext() throws IOException {
+                return values.hasNextValue();
+            }
+
+            @Override
+            public R next() throws IOException {
+                return values.nextValue();
+            }
+
+            @Override
+            public void close() throws IOException {
+                values.close();
+            }
+        };
+    }
+
+    /**
+     * Writes the rows of one chunk; a new instance is used for every transaction.
+     */
+    private interface RowWriter<R> {
+
+        /**
+         * @return why the row cannot be written, or {@code null} if it looks fine
+         */
+        String validate(R row);
+
+        Long idOf(R row);
+
+        /**
+         * Loads what the rows need in one go; runs inside the transaction.
+         */
+        void prepare(List<R> rows);
+
+        /**
+         * @return why the row was not written, or {@code null} if it was
+         */
+        String write(R row);
+    }
+
+    private static final class Report {
+        int rows;
+        int created;
+        int updated;
+        int failed;
+        String error;
+        final List<BulkRowError> errors = new ArrayList<>();
+
+        void fail(int row, Long id, String error) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new BulkRowError(row, id, error));
+            }
+        }
+
+        void succeed(Long id) {
+            if (id == null) {
+                created++;
+            } else {
+                updated++;
+            }
+        }
+
+        BulkWriteProgress progress() {
+            return new BulkWriteProgress(rows, created, updated, failed);
+        }
+    }
+
+    private <R> BulkWriteReport write(InputStream body, RowSourceFactory<R> sources, Supplier<RowWriter<R>> writers,
+                                      Consumer<BulkWriteProgress> progress) {
+        Report report = new Report();
+        List<R> chunk = new ArrayList<>(chunkSize);
+        List<Integer> chunkRows = new ArrayList<>(chunkSize);
+        try (RowSource<R> rows = sources.open(body)) {
+            while (rows.hasNext()) {
+                int row = report.rows++;
+                try {
+                    chunk.add(rows.next());
+                    chunkRows.add(row);
+                } catch (IllegalArgumentException e) {
+                    report.fail(row, null, e.getMessage());
+                    continue;
+                }
+                if (chunk.size() == chunkSize) {
+                    writeChunk(chunkRows, chunk, writers, report);
+                    chunk.clear();
+                    chunkRows.clear();
+                    progress.accept(report.progress());
+                }
+            }
+        } catch (IOException | RuntimeJsonMappingException e) {
+            report.error = "Could not read row " + report.rows + ": " + e.getMessage();
+            logger.warn("Bulk write stopped at row {}", report.rows, e);
+        }
+        // rows read before a parse error are still written
+        writeChunk(chunkRows, chunk, writers, report);
+        logger.info("Bulk write of {} rows: {} created, {} updated, {} failed",
+                report.rows, report.created, report.updated, report.failed);
+        return new BulkWriteReport(report.created, report.updated, report.failed, report.error, report.errors);
+    }
+
+    /**
+     * @param rowNumbers the position of each row of {@code chunk} in the body
+     */
+    private <R> void writeChunk(List<Integer> rowNumbers, List<R> chunk, Supplier<RowWriter<R>> writers, Report report) {
+        RowWriter<R> validator = writers.get();
+        List<Integer> valid = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            String problem = validator.validate(chunk.get(i));
+            if (problem == null) {
+                valid.add(i);
+            } else {
+                report.fail(rowNumbers.get(i), validator.idOf(chunk.get(i)), problem);
+            }
+        }
+        if (valid.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<String> outcomes = writeInTransaction(valid.stream().map(chunk::get).toList(), writers.get());
+            for (int i = 0; i < valid.size(); i++) {
+                int index = valid.get(i);
+                recordOutcome(report, rowNumbers.get(index), chunk.get(index), validator, outcomes.get(i));
+            }
+            return;
+        } catch (DataAccessException | PersistenceException e) {
+            logger.debug("Bulk chunk at row {} failed, retrying row by row: {}", rowNumbers.get(0), describe(e));
+        } finally {
+            entityManager.clear();
+        }
+
+        for (int index : valid) {
+            R row = chunk.get(index);
+            try {
+                recordOutcome(report, rowNumbers.get(index), row, validator,
+                        writeInTransaction(List.of(row), writers.get()).get(0));
+            } catch (DataAccessException | PersistenceException e) {
+                report.fail(rowNumbers.get(index), validator.idOf(row), describe(e));
+            } finally {
+                entityManager.clear();
+            }
+        }
+    }
+
+    private <R> List<String> writeInTransaction(List<R> rows, RowWriter<R> writer) {
+        return transactionTemplate.execute(status -> {
+            writer.prepare(rows);
+            List<String> outcomes = new ArrayList<>(rows.size());
+            for (R row : rows) {
+                outcomes.add(writer.write(row));
+            }
+            entityManager.flush();
+            return outcomes;
+        });
+    }
+
+    private static <R> void recordOutcome(Report report, int row, R value, RowWriter<R> writer, String outcome) {
+        if (outcome == null) {
+            report.succeed(writer.idOf(value));
+        } else {
+            report.fail(row, writer.idOf(value), outcome);
+        }
+    }
+
+    /**
+     * The database's own message, e.g. naming the violated constraint, without the SQL around it.
+     */
+    private static String describe(Exception e) {
+        String message = Objects.requireNonNullElse(NestedExceptionUtils.getMostSpecificCause(e).getMessage(),
+                e.getClass().getSimpleName());
+        int lineEnd = message.indexOf('\n');
+        return lineEnd < 0 ? message : message.substring(0, lineEnd);
+    }
+
+    private class StudentWriter implements RowWriter<BulkStudent> {
+
+        private Map<Long, Student> existing = Map.of();
+        private Map<Long, Faculty> facultiesById = Map.of();
+        private Map<String, List<Faculty>> facultiesByName = Map.of();
+        /** Student id by name, for the names the rows use; kept up to date as rows are written. */
+        private final Map<String, Long> nameOwners = new HashMap<>();
+
+        @Override
+        public String validate(BulkStudent row) {
+            if (row.name() == null || row.name().isBlank()) {
+                return "Name is required";
+            }
+            if (row.age() == null) {
+                return "Age is required";
+            }
+            if (row.age() < minAge) {
+                return "Age must be at least " + minAge;
+            }
+            return null;
+        }
+
+        @Override
+        public Long idOf(BulkStudent row) {
+            return row.id();
+        }
+
+        @Override
+        public void prepare(List<BulkStudent> rows) {
+            List<Long> ids = rows.stream().map(BulkStudent::id).filter(Objects::nonNull).toList();
+            if (!ids.isEmpty()) {
+                existing = studentRepository.findAllById(ids).stream()
+                        .collect(Collectors.toMap(Student::getId, Function.identity()));
+            }
+            List<Long> facultyIds = rows.stream().map(BulkStudent::facultyId).filter(Objects::nonNull).distinct().toList();
+            if (!facultyIds.isEmpty()) {
+                facultiesById = facultyRepository.findAllById(facultyIds).stream()
+                        .collect(Collectors.toMap(Faculty::getId, Function.identity()));
+            }
+            List<String> facultyNames = rows.stream()
+                    .filter(row -> row.facultyId() == null && row.facultyName() != null)
+                    .map(row -> row.facultyName().toLowerCase(Locale.ROOT))
+                    .distinct()
+                    .toList();
+            if (!facultyNames.isEmpty()) {
+                facultiesByName = facultyRepository.findByLowerCaseNameIn(facultyNames).stream()
+                        .collect(Collectors.groupingBy(faculty -> faculty.getName().toLowerCase(Locale.ROOT)));
+            }
+            for (StudentName taken : studentRepository.findNamesIn(rows.stream().map(BulkStudent::name).distinct().toList())) {
+                nameOwners.put(taken.name(), taken.id());
+            }
+        }
+
+        @Override
+        public String write(BulkStudent row) {
+            Student student;
+            StudentSnapshot before = null;
+            if (row.id() == null) {
+                student = new Student();
+            } else {
+                student = existing.get(row.id());
+                if (student == null) {
+                    return "No student with id = " + row.id();
+                }
+                before = StudentSnapshot.of(student);
+            }
+
+            Faculty faculty = null;
+            if (row.facultyId() != null) {
+                faculty = facultiesById.get(row.facultyId());
+                if (faculty == null) {
+                    return "No faculty with id = " + row.facultyId();
+                }
+            } else if (row.facultyName() != null) {
+                List<Faculty> matches = facultiesByName.getOrDefault(row.facultyName().toLowerCase(Locale.ROOT), List.of());
+                if (matches.size() != 1) {
+                    return (matches.isEmpty() ? "No faculty named " : "More than one faculty named ") + row.facultyName();
+                }
+                faculty = matches.get(0);
+            }
+
+            Long owner = nameOwners.get(row.name());
+            if (owner != null && !owner.equals(row.id())) {
+                return "Name is already taken: " + row.name();
+            }
+
+            student.setName(row.name());
+            student.setAge(row.age());
+            student.setFaculty(faculty);
+            if (row.id() == null) {
+                studentRepository.save(student);
+            }
+            if (before != null) {
+                nameOwners.remove(before.name(), before.id());
+            }
+            nameOwners.put(student.getName(), student.getId());
+            eventPublisher.publishEvent(new StudentChangedEvent(before, StudentSnapshot.of(student)));
+            return null;
+        }
+    }
+
+    private class FacultyWriter implements RowWriter<BulkFaculty> {
+
+        private Map<Long, Faculty> existing = Map.of();
+
+        @Override
+        public String validate(BulkFaculty row) {
+            if (row.name() == null || row.name().isBlank()) {
+                return "Name is required";
+            }
+            return null;
+        }
+
+        @Override
+        public Long idOf(BulkFaculty row) {
+            return row.id();
+        }
+
+        @Override
+        public void prepare(List<BulkFaculty> rows) {
+            List<Long> ids = rows.stream().map(BulkFaculty::id).filter(Objects::nonNull).toList();
+            if (!ids.isEmpty()) {
+                existing = facultyRepository.findAllById(ids).stream()
+                        .collect(Collectors.toMap(Faculty::getId, Function.identity()));
+            }
+        }
+
+        @Override
+        public String write(BulkFaculty row) {
+            Faculty faculty;
+            if (row.id() == null) {
+                faculty = new Faculty();
+            } else {
+                faculty = existing.get(row.id());
+                if (faculty == null) {
+                    return "No faculty with id = " + row.id();
+                }
+            }
+            FacultySnapshot before = row.id() == null ? null : FacultySnapshot.of(faculty);
+            faculty.setName(row.name());
+            faculty.setColor(row.color());
+            if (row.id() == null) {
+                facultyRepository.save(faculty);
+            }
+            eventPublisher.publishEvent(new FacultyChangedEvent(before, FacultySnapshot.of(faculty)));
+            return null;
+        }
+    }
+}
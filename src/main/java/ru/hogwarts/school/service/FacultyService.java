@@ -1,18 +1,39 @@
 package ru.hogwarts.school.service;
 
+import jakarta.annotation.PostConstruct;
+import org.hibernate.Hibernate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school.cache.BoundedCache;
+import ru.hogwarts.school.cache.CacheStats;
+import ru.hogwarts.school.dto.BatchLookup;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.dto.FacultyPatch;
+import ru.hogwarts.school.dto.FacultySummary;
+import ru.hogwarts.school.dto.ListingOrder;
+import ru.hogwarts.school.dto.StudentSummary;
+import ru.hogwarts.school.event.FacultyChangedEvent;
+import ru.hogwarts.school.event.FacultySnapshot;
+import ru.hogwarts.school.event.StudentChangedEvent;
 import ru.hogwarts.school.model.Faculty;
 import org.springframework.stereotype.Service;
-import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repositories.FacultyRepository;
+import ru.hogwarts.school.repositories.StudentRepository;
 
+import java.time.Duration;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
+import java.util.function.Function;
 
 @Service
 public class FacultyService {
@@ -20,39 +41,181 @@ public class FacultyService {
     private static final Logger logger = LoggerFactory.getLogger(FacultyService.class);
 
     private final FacultyRepository facultyRepository;
+    private final StudentRepository studentRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${listing.max-page-size:100}")
+    private int maxPageSize;
+
+    @Value("${faculty.cache.max-entities:10000}")
+    private long cacheMaxEntities;
+
+    @Value("${faculty.cache.ttl:PT10M}")
+    private Duration cacheTimeToLive;
+
+    private BoundedCache<Long, Faculty> facultyCache;
 
     @Autowired
-    public FacultyService(FacultyRepository facultyRepository) {
+    public FacultyService(FacultyRepository facultyRepository, StudentRepository studentRepository,
+                          ApplicationEventPublisher eventPublisher) {
         this.facultyRepository = facultyRepository;
+        this.studentRepository = studentRepository;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostConstruct
+    void createFacultyCache() {
+        // a cached faculty holds its students too, so each of them counts against the budget
+        facultyCache = new BoundedCache<>(cacheMaxEntities, faculty -> 1L + faculty.getStudents().size(), cacheTimeToLive);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFacultyChanged(FacultyChangedEvent event) {
+        if (event.before() != null) {
+            facultyCache.invalidate(event.before().id());
+        }
+        if (event.after() != null) {
+            facultyCache.invalidate(event.after().id());
+        }
+    }
+
+    /**
+     * A cached faculty lists its students, so joining or leaving a faculty drops it as well.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStudentChanged(StudentChangedEvent event) {
+        if (event.before() != null && event.before().facultyId() != null) {
+            facultyCache.invalidate(event.before().facultyId());
+        }
+        if (event.after() != null && event.after().facultyId() != null) {
+            facultyCache.invalidate(event.after().facultyId());
+        }
     }
 
+    @Transactional
     public Faculty addFaculty(Faculty faculty) {
         logger.info("Invoked method to add faculty");
-        return facultyRepository.save(faculty);
+        faculty.setId(0);
+        faculty.setVersion(null);
+        Faculty saved = facultyRepository.save(faculty);
+        eventPublisher.publishEvent(new FacultyChangedEvent(null, FacultySnapshot.of(saved)));
+        return saved;
     }
 
+    @Transactional(readOnly = true)
     public Faculty findFaculty(long id) {
         logger.info("Invoked method to find faculty with id = {}", id);
-        return facultyRepository.findById(id).orElse(null);
+        Faculty cached = facultyCache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = facultyCache.generation();
+        Faculty faculty = facultyRepository.findById(id).orElse(null);
+        if (faculty != null) {
+            // loaded now, so the cached copy can still be serialized after the session is gone
+            Hibernate.initialize(faculty.getStudents());
+            facultyCache.putIfGeneration(id, faculty, generation);
+        }
+        return faculty;
+    }
+
+    public CacheStats getFacultyCacheStats() {
+        return facultyCache.stats();
     }
 
+    /**
+     * Replaces the faculty's fields with a single conditional UPDATE. If the faculty carries a
+     * version, the edit only applies while the stored faculty is still at that version.
+     *
+     * @return the edited faculty, or {@code null} if there is no faculty with that id
+     * @throws OptimisticLockingFailureException if the faculty has moved past the given version
+     */
+    @Transactional
     public Faculty editFaculty(long id, Faculty faculty) {
         logger.info("Invoked method to edit faculty with id = {}", id);
-        if (!facultyRepository.existsById(id)) {
+        FacultyRepository.PriorState prior = facultyRepository
+                .updateById(id, faculty.getName(), faculty.getColor(), faculty.getVersion())
+                .orElse(null);
+        if (prior == null) {
+            checkVersion(id, faculty.getVersion());
             logger.warn("Trying to edit non-existent faculty with id = {}", id);
             return null;
         }
         faculty.setId(id);
-        return facultyRepository.save(faculty);
+        faculty.setVersion(prior.getVersion());
+        eventPublisher.publishEvent(new FacultyChangedEvent(snapshot(id, prior), FacultySnapshot.of(faculty)));
+        return faculty;
     }
 
-    public void deleteFaculty(long id) {
+    /**
+     * Changes only the fields the patch sets, with a single conditional UPDATE. The returned
+     * faculty is built from the statement's result; its students are not loaded.
+     *
+     * @return the patched faculty, or {@code null} if there is no faculty with that id
+     * @throws OptimisticLockingFailureException if the faculty has moved past the patch's version
+     */
+    @Transactional
+    public Faculty patchFaculty(long id, FacultyPatch patch) {
+        logger.info("Invoked method to patch faculty with id = {}", id);
+        FacultyRepository.PriorState prior = facultyRepository
+                .patchById(id, patch.name(), patch.color(), patch.version())
+                .orElse(null);
+        if (prior == null) {
+            checkVersion(id, patch.version());
+            logger.warn("Trying to patch non-existent faculty with id = {}", id);
+            return null;
+        }
+        Faculty patched = new Faculty(id, patch.name() != null ? patch.name() : prior.getName(),
+                patch.color() != null ? patch.color() : prior.getColor());
+        patched.setVersion(prior.getVersion());
+        eventPublisher.publishEvent(new FacultyChangedEvent(snapshot(id, prior), FacultySnapshot.of(patched)));
+        return patched;
+    }
+
+    /**
+     * Deletes the faculty with a single conditional DELETE.
+     *
+     * @param version the version the faculty must still be at, or {@code null} to delete regardless
+     * @throws OptimisticLockingFailureException if the faculty has moved past that version
+     */
+    @Transactional
+    public void deleteFaculty(long id, Long version) {
         logger.info("Invoked method to delete faculty with id = {}", id);
-        if (!facultyRepository.existsById(id)) {
+        FacultyRepository.PriorState prior = facultyRepository.deleteByIdReturning(id, version).orElse(null);
+        if (prior == null) {
+            checkVersion(id, version);
             logger.warn("Trying to delete non-existent faculty with id = {}", id);
             return;
         }
-        facultyRepository.deleteById(id);
+        eventPublisher.publishEvent(new FacultyChangedEvent(snapshot(id, prior), null));
+    }
+
+    /**
+     * Tells a missing faculty from a version mismatch once a conditional write matched no row;
+     * only that failure path pays for the extra query.
+     */
+    private void checkVersion(long id, Long version) {
+        if (version != null && facultyRepository.existsById(id)) {
+            logger.warn("Faculty with id = {} is no longer at version {}", id, version);
+            throw new OptimisticLockingFailureException("Faculty " + id + " is no longer at version " + version);
+        }
+    }
+
+    private static FacultySnapshot snapshot(long id, FacultyRepository.PriorState prior) {
+        return new FacultySnapshot(id, prior.getName(), prior.getColor());
+    }
+
+    /**
+     * Faculties by id, with their students, in one query; in request order, plus the ids that
+     * matched no faculty.
+     *
+     * @throws IllegalArgumentException if too many ids are requested at once
+     */
+    public BatchLookup<Faculty> getFaculties(List<Long> ids) {
+        List<Long> distinct = BatchLookups.distinct(ids);
+        logger.debug("Invoked method to get {} faculties by id", distinct.size());
+        return BatchLookups.inRequestOrder(distinct, facultyRepository.findAllWithStudentsByIdIn(distinct),
+                Faculty::getId, Function.identity());
     }
 
     public Collection<Faculty> getAllFaculties() {
@@ -60,6 +223,19 @@ public class FacultyService {
         return facultyRepository.findAll();
     }
 
+    /**
+     * @throws IllegalArgumentException if the cursor is malformed or belongs to another order
+     */
+    public CursorPage<FacultySummary> getFacultiesPage(ListingOrder order, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+        logger.debug("Invoked method to list faculties by {}, page size = {}", order, pageSize);
+        ListingCursor after = ListingCursor.decode(cursor, order);
+        List<FacultySummary> faculties = order == ListingOrder.NAME
+                ? facultyRepository.findSummariesAfterName(after.name(), after.id(), Limit.of(pageSize + 1))
+                : facultyRepository.findSummariesAfterId(after.id(), Limit.of(pageSize + 1));
+        return ListingCursor.page(faculties, pageSize, order, FacultySummary::id, FacultySummary::name);
+    }
+
     public Collection<Faculty> findByName(String name) {
         logger.debug("Invoked method to find faculties by name = {}", name);
         return facultyRepository.findByNameIgnoreCase(name);
@@ -70,14 +246,28 @@ public class FacultyService {
         return facultyRepository.findByColorIgnoreCase(color);
     }
 
-    public Collection<Student> getStudentsOfFaculty(long facultyId) {
-        logger.info("Invoked method to get students of faculty with id = {}", facultyId);
-        Faculty faculty = facultyRepository.findById(facultyId).orElse(null);
-        if (faculty == null) {
-            logger.warn("No faculty found with id = {} when trying to get students", facultyId);
-            return List.of();
-        }
-        return faculty.getStudents();
+    /**
+     * One page of the faculty's students by id, read straight from the student table; an
+     * unknown faculty just has no students.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed or belongs to another listing order
+     */
+    public CursorPage<StudentSummary> getStudentsOfFacultyPage(long facultyId, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+        logger.debug("Invoked method to list students of faculty with id = {}, page size = {}", facultyId, pageSize);
+        ListingCursor after = ListingCursor.decode(cursor, ListingOrder.ID);
+        List<StudentSummary> students = studentRepository.findSummariesOfFacultyAfterId(facultyId, after.id(),
+                Limit.of(pageSize + 1));
+        return ListingCursor.page(students, pageSize, ListingOrder.ID, StudentSummary::id, StudentSummary::name);
+    }
+
+    public boolean facultyExists(long facultyId) {
+        return facultyRepository.existsById(facultyId);
+    }
+
+    public long countStudentsOfFaculty(long facultyId) {
+        logger.debug("Invoked method to count students of faculty with id = {}", facultyId);
+        return studentRepository.countByFacultyId(facultyId);
     }
 
     public String getLongestFacultyName() {
@@ -0,0 +1,70 @@
+package ru.hogwarts.school.service;
+
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.dto.ListingOrder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Position after the last row of a keyset-paginated page: the row's id and, when listing by
+ * name, its name. Clients get it as an opaque base64url token, so the encoding can change
+ * without breaking them beyond a restart of their listing.
+ */
+record ListingCursor(ListingOrder order, long id, String name) {
+
+    /** Comes before every row: ids start at 1 and the empty string sorts first. */
+    static ListingCursor start(ListingOrder order) {
+        return new ListingCursor(order, 0, "");
+    }
+
+    /**
+     * @throws IllegalArgumentException if the token is malformed or was issued for another order
+     */
+    static ListingCursor decode(String token, ListingOrder order) {
+        if (token == null || token.isEmpty()) {
+            return start(order);
+        }
+        String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split(":", 3);
+        if (parts.length < 2 || !parts[0].equals(order.name())) {
+            throw new IllegalArgumentException("Cursor does not belong to a listing by " + order);
+        }
+        try {
+            long id = Long.parseLong(parts[1]);
+            if (order == ListingOrder.NAME) {
+                if (parts.length != 3) {
+                    throw new IllegalArgumentException("Cursor is missing the name");
+                }
+                return new ListingCursor(order, id, parts[2]);
+            }
+            return new ListingCursor(order, id, null);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+
+    String encode() {
+        String payload = order.name() + ":" + id + (order == ListingOrder.NAME ? ":" + name : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Builds a page from up to {@code pageSize + 1} rows; the extra row only tells that another page follows.
+     */
+    static <T> CursorPage<T> page(List<T> rows, int pageSize, ListingOrder order,
+                                  Function<T, Long> idOf, Function<T, String> nameOf) {
+        if (rows.size() <= pageSize) {
+            return new CursorPage<>(rows, null);
+        }
+        List<T> page = rows.subList(0, pageSize);
+        T last = page.get(pageSize - 1);
+        String name = null;
+        if (order == ListingOrder.NAME) {
+            // a missing name sorts as the empty string
+            name = nameOf.apply(last) != null ? nameOf.apply(last) : "";
+        }
+        return new CursorPage<>(page, new ListingCursor(order, idOf.apply(last), name).encode());
+    }
+}
@@ -0,0 +1,18 @@
+package ru.hogwarts.school.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Rows parsed one at a time from a request body, so only the current row is held in memory.
+ */
+interface RowSource<R> extends Closeable {
+
+    boolean hasNext() throws IOException;
+
+    /**
+     * @throws IllegalArgumentException if this row is malformed; the rows after it can still be read
+     * @throws IOException if the input cannot be read any further
+     */
+    R next() throws IOException;
+}
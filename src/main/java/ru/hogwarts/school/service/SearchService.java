@@ -0,0 +1,40 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.hogwarts.school.dto.SearchHit;
+import ru.hogwarts.school.index.NameSearchIndex;
+
+import java.util.List;
+
+@Service
+public class SearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchService.class);
+
+    private static final int MAX_LIMIT = 100;
+    /** Longer queries cost more trigram lookups than a name can match anyway. */
+    private static final int MAX_QUERY_LENGTH = 100;
+
+    private final NameSearchIndex nameSearchIndex;
+
+    @Value("${search.min-score:0.5}")
+    private double minScore;
+
+    public SearchService(NameSearchIndex nameSearchIndex) {
+        this.nameSearchIndex = nameSearchIndex;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the query is longer than {@value #MAX_QUERY_LENGTH} characters
+     */
+    public List<SearchHit> search(String query, int limit) {
+        logger.debug("Invoked method to search students and faculties for '{}', limit = {}", query, limit);
+        if (query.length() > MAX_QUERY_LENGTH) {
+            throw new IllegalArgumentException("Query is longer than " + MAX_QUERY_LENGTH + " characters");
+        }
+        return nameSearchIndex.search(query, Math.max(0, Math.min(limit, MAX_LIMIT)), minScore);
+    }
+}
@@ -0,0 +1,154 @@
+package ru.hogwarts.school.service;
+
+import ru.hogwarts.school.dto.BulkStudent;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads students from RFC 4180 CSV with a header row. The {@code name} and {@code age} columns
+ * are required; {@code id}, {@code faculty_id} and {@code faculty} (a faculty name) are
+ * optional, and other columns are ignored. This is the layout of {@code /student/export?format=csv}.
+ */
+final class StudentCsvReader implements RowSource<BulkStudent> {
+
+    private static final int MAX_FIELD_LENGTH = 64 * 1024;
+
+    private final Reader reader;
+    private final Map<String, Integer> columns = new HashMap<>();
+    private List<String> pending;
+    /** A character read ahead while closing a quoted field, or -2 for none. */
+    private int lookahead = -2;
+
+    StudentCsvReader(InputStream input) throws IOException {
+        this.reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        List<String> header = readRecord();
+        if (header == null) {
+            throw new IOException("CSV input is empty");
+        }
+        for (int i = 0; i < header.size(); i++) {
+            String column = header.get(i).replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT);
+            columns.putIfAbsent(column, i);
+        }
+        if (!columns.containsKey("name") || !columns.containsKey("age")) {
+            throw new IOException("CSV header must contain the name and age columns");
+        }
+    }
+
+    @Override
+    public boolean hasNext() throws IOException {
+        while (pending == null) {
+            List<String> record = readRecord();
+            if (record == null) {
+                return false;
+            }
+            if (record.size() > 1 || !record.get(0).isEmpty()) {
+                pending = record;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public BulkStudent next() throws IOException {
+        if (!hasNext()) {
+            throw new IOException("No more rows");
+        }
+        List<String> record = pending;
+        pending = null;
+        Long age = number(record, "age");
+        if (age != null && (age < Integer.MIN_VALUE || age > Integer.MAX_VALUE)) {
+            throw new IllegalArgumentException("Column age is out of range: " + age);
+        }
+        return new BulkStudent(number(record, "id"), field(record, "name"), age == null ? null : age.intValue(),
+                number(record, "faculty_id"), field(record, "faculty"));
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private String field(List<String> record, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= record.size() || record.get(index).isEmpty()) {
+            return null;
+        }
+        return record.get(index);
+    }
+
+    private Long number(List<String> record, String column) {
+        String value = field(record, column);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Column " + column + " is not a number: " + value);
+        }
+    }
+
+    /**
+     * Reads the fields of the next record, which may span lines inside quotes; {@code null} at the end of input.
+     */
+    private List<String> readRecord() throws IOException {
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted field");
+                }
+                if (c == '"') {
+                    int next = read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        lookahead = next;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == -1) {
+                fields.add(field.toString());
+                return fields;
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+            if (field.length() > MAX_FIELD_LENGTH) {
+                throw new IOException("CSV field longer than " + MAX_FIELD_LENGTH + " characters");
+            }
+            c = read();
+        }
+    }
+
+    private int read() throws IOException {
+        if (lookahead != -2) {
+            int c = lookahead;
+            lookahead = -2;
+            return c;
+        }
+        return reader.read();
+    }
+}
@@ -0,0 +1,151 @@
+package ru.hogwarts.school.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.dto.BulkStudent;
+import ru.hogwarts.school.dto.RowFormat;
+import ru.hogwarts.school.dto.StudentSummary;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repositories.StudentRepository;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes all students to a response as they are read, so an export needs the same memory for
+ * ten students as for ten million.
+ * <p>
+ * Rows come from a server-side cursor in a read-only transaction, and every student is detached
+ * once written so the persistence context does not grow with the export. Output is flushed to
+ * the client every {@link #FLUSH_EVERY} rows. NDJSON rows have the shape {@code /student/bulk}
+ * accepts, so an export can be loaded back as is. The students of one faculty are streamed the
+ * same way, as the JSON array {@code /faculty/{id}/showStudents} returns.
+ */
+@Service
+public class StudentExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StudentExportService.class);
+
+    private static final int FLUSH_EVERY = 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final StudentRepository studentRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public StudentExportService(StudentRepository studentRepository, EntityManager entityManager,
+                                ObjectMapper objectMapper, PlatformTransactionManager transactionManager) {
+        this.studentRepository = studentRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    public void exportStudents(RowFormat format, OutputStream output) throws IOException {
+        logger.info("Invoked method to export students as {}", format);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE);
+        if (format == RowFormat.CSV) {
+            writer.write("id,name,age,faculty_id\n");
+        }
+        long exported;
+        try {
+            exported = readOnlyTransaction.execute(status -> {
+                try (Stream<Student> students = studentRepository.streamAllWithFaculty()) {
+                    long count = 0;
+                    for (Iterator<Student> it = students.iterator(); it.hasNext(); ) {
+                        Student student = it.next();
+                        writeRow(writer, format, student);
+                        entityManager.detach(student);
+                        if (++count % FLUSH_EVERY == 0) {
+                            writer.flush();
+                        }
+                    }
+                    return count;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            // most often the client went away
+            throw e.getCause();
+        }
+        writer.flush();
+        logger.info("Exported {} students as {}", exported, format);
+    }
+
+    /**
+     * Writes the faculty's students as one JSON array of {@link StudentSummary} rows, by id,
+     * streamed from the student table without loading the faculty's collection.
+     */
+    public void exportStudentsOfFaculty(long facultyId, OutputStream output) throws IOException {
+        logger.debug("Invoked method to stream students of faculty with id = {}", facultyId);
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(new BufferedOutputStream(output, BUFFER_SIZE));
+        generator.writeStartArray();
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<StudentSummary> students = studentRepository.streamSummariesOfFaculty(facultyId)) {
+                    long count = 0;
+                    for (Iterator<StudentSummary> it = students.iterator(); it.hasNext(); ) {
+                        generator.writeObject(it.next());
+                        if (++count % FLUSH_EVERY == 0) {
+                            generator.flush();
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            // most often the client went away
+            throw e.getCause();
+        }
+        generator.writeEndArray();
+        generator.flush();
+    }
+
+    private void writeRow(Writer writer, RowFormat format, Student student) throws IOException {
+        Long facultyId = student.getFaculty() == null ? null : student.getFaculty().getId();
+        if (format == RowFormat.NDJSON) {
+            writer.write(objectMapper.writeValueAsString(
+                    new BulkStudent(student.getId(), student.getName(), student.getAge(), facultyId, null)));
+        } else {
+            writer.write(Long.toString(student.getId()));
+            writer.write(',');
+            writer.write(csvField(student.getName()));
+            writer.write(',');
+            writer.write(Integer.toString(student.getAge()));
+            writer.write(',');
+            writer.write(facultyId == null ? "" : facultyId.toString());
+        }
+        writer.write('\n');
+    }
+
+    /**
+     * Quotes a value per RFC 4180 when it contains a separator, a quote or a line break.
+     */
+    static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -1,64 +1,252 @@
 package ru.hogwarts.school.service;
 
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school.cache.BoundedCache;
+import ru.hogwarts.school.cache.CacheStats;
+import ru.hogwarts.school.dto.AgeHistogram;
+import ru.hogwarts.school.dto.BatchLookup;
+import ru.hogwarts.school.dto.AgePercentile;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.dto.FacultyAgeStats;
+import ru.hogwarts.school.dto.FacultySummary;
+import ru.hogwarts.school.dto.ListingOrder;
+import ru.hogwarts.school.dto.StudentPatch;
+import ru.hogwarts.school.dto.StudentFaculty;
+import ru.hogwarts.school.dto.StudentStats;
+import ru.hogwarts.school.dto.StudentSummary;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.event.StudentSnapshot;
+import ru.hogwarts.school.index.StudentAgeIndex;
+import ru.hogwarts.school.index.StudentAggregates;
+import ru.hogwarts.school.index.StudentAnalytics;
+import ru.hogwarts.school.index.StudentNameIndex;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import org.springframework.stereotype.Service;
 import ru.hogwarts.school.repositories.StudentRepository;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 public class StudentService {
 
+    private static final int MAX_NAMES_LIMIT = 1000;
+    /** Keeps the IN list well under the PostgreSQL bind parameter limit. */
+    private static final int MAX_IDS_PER_QUERY = 10_000;
+
     private final StudentRepository studentRepository;
+    private final StudentNameIndex studentNameIndex;
+    private final StudentAggregates studentAggregates;
+    private final StudentAgeIndex studentAgeIndex;
+    private final StudentAnalytics studentAnalytics;
+    private final ApplicationEventPublisher eventPublisher;
 
     private static final Logger logger = LoggerFactory.getLogger(StudentService.class);
 
+    @Value("${listing.max-page-size:100}")
+    private int maxPageSize;
+
+    @Value("${student.cache.max-entities:10000}")
+    private long cacheMaxEntities;
+
+    @Value("${student.cache.ttl:PT10M}")
+    private Duration cacheTimeToLive;
+
+    private BoundedCache<Long, Student> studentCache;
+
     @Autowired
-    public StudentService(StudentRepository studentRepository) {
+    public StudentService(StudentRepository studentRepository, StudentNameIndex studentNameIndex,
+                          StudentAggregates studentAggregates, StudentAgeIndex studentAgeIndex,
+                          StudentAnalytics studentAnalytics, ApplicationEventPublisher eventPublisher) {
         this.studentRepository = studentRepository;
+        this.studentNameIndex = studentNameIndex;
+        this.studentAggregates = studentAggregates;
+        this.studentAgeIndex = studentAgeIndex;
+        this.studentAnalytics = studentAnalytics;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostConstruct
+    void createStudentCache() {
+        // students are all about the same size, so the budget is a number of entities
+        studentCache = new BoundedCache<>(cacheMaxEntities, student -> 1, cacheTimeToLive);
+    }
+
+    /**
+     * Drops the cached student once a write to it is committed; a lookup that raced the write
+     * is not cached, see {@link BoundedCache#putIfGeneration}.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStudentChanged(StudentChangedEvent event) {
+        if (event.before() != null) {
+            studentCache.invalidate(event.before().id());
+        }
+        if (event.after() != null) {
+            studentCache.invalidate(event.after().id());
+        }
     }
 
+    /**
+     * Always inserts a new student; an id or version in the body is ignored rather than turning
+     * the save into a merge of an existing student.
+     */
+    @Transactional
     public Student addStudent(Student student) {
         logger.debug("Invoked method to create student");
-        return studentRepository.save(student);
+        student.setId(0);
+        student.setVersion(null);
+        Student saved = studentRepository.save(student);
+        eventPublisher.publishEvent(new StudentChangedEvent(null, StudentSnapshot.of(saved)));
+        return saved;
     }
 
     public Student findStudent(long id) {
         logger.info("Invoked method to find student with id = {}", id);
-        return studentRepository.findById(id).orElse(null);
+        Student cached = studentCache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = studentCache.generation();
+        Student student = studentRepository.findById(id).orElse(null);
+        if (student != null) {
+            studentCache.putIfGeneration(id, student, generation);
+        }
+        return student;
+    }
+
+    public CacheStats getStudentCacheStats() {
+        return studentCache.stats();
     }
 
+    /**
+     * Replaces the student's fields with a single conditional UPDATE. If the student carries a
+     * version, the edit only applies while the stored student is still at that version.
+     *
+     * @return the edited student, or {@code null} if there is no student with that id
+     * @throws OptimisticLockingFailureException if the student has moved past the given version
+     * @throws IllegalArgumentException if the student names a faculty that does not exist
+     */
+    @Transactional
     public Student editStudent(long id, Student student) {
         logger.info("Invoked method to edit student with id = {}", id);
-        if (!studentRepository.existsById(id)) {
+        Long facultyId = student.getFaculty() == null ? null : student.getFaculty().getId();
+        StudentRepository.PriorState prior;
+        try {
+            prior = studentRepository.updateById(id, student.getName(), student.getAge(), facultyId, student.getVersion())
+                    .orElse(null);
+        } catch (DataIntegrityViolationException e) {
+            throw new IllegalArgumentException("No faculty with id = " + facultyId, e);
+        }
+        if (prior == null) {
+            checkVersion(id, student.getVersion());
             logger.warn("Trying to edit non-existent student with id = {}", id);
             return null;
         }
         student.setId(id);
-        return studentRepository.save(student);
+        student.setVersion(prior.getVersion());
+        eventPublisher.publishEvent(new StudentChangedEvent(snapshot(id, prior),
+                new StudentSnapshot(id, student.getName(), student.getAge(), facultyId)));
+        return student;
+    }
+
+    /**
+     * Changes only the fields the patch sets, with a single conditional UPDATE. The returned
+     * student is built from the statement's result; its faculty is not loaded.
+     *
+     * @return the patched student, or {@code null} if there is no student with that id
+     * @throws OptimisticLockingFailureException if the student has moved past the patch's version
+     * @throws IllegalArgumentException if the patch names a faculty that does not exist
+     */
+    @Transactional
+    public Student patchStudent(long id, StudentPatch patch) {
+        logger.info("Invoked method to patch student with id = {}", id);
+        StudentRepository.PriorState prior;
+        try {
+            prior = studentRepository.patchById(id, patch.name(), patch.age(), patch.facultyId(), patch.version())
+                    .orElse(null);
+        } catch (DataIntegrityViolationException e) {
+            throw new IllegalArgumentException("No faculty with id = " + patch.facultyId(), e);
+        }
+        if (prior == null) {
+            checkVersion(id, patch.version());
+            logger.warn("Trying to patch non-existent student with id = {}", id);
+            return null;
+        }
+        Student patched = new Student(id, patch.name() != null ? patch.name() : prior.getName(),
+                patch.age() != null ? patch.age() : prior.getAge());
+        patched.setVersion(prior.getVersion());
+        Long facultyId = patch.facultyId() != null ? patch.facultyId() : prior.getFacultyId();
+        eventPublisher.publishEvent(new StudentChangedEvent(snapshot(id, prior),
+                new StudentSnapshot(id, patched.getName(), patched.getAge(), facultyId)));
+        return patched;
     }
 
-    public void deleteStudent(long id) {
+    /**
+     * Deletes the student with a single conditional DELETE.
+     *
+     * @param version the version the student must still be at, or {@code null} to delete regardless
+     * @throws OptimisticLockingFailureException if the student has moved past that version
+     */
+    @Transactional
+    public void deleteStudent(long id, Long version) {
         logger.info("Invoked method to delete student with id = {}",id);
-        if (!studentRepository.existsById(id)){
-        logger.warn("Trying to delete non-existent student with id = {}", id);
-        return;}
-        studentRepository.deleteById(id);
+        StudentRepository.PriorState prior = studentRepository.deleteByIdReturning(id, version).orElse(null);
+        if (prior == null) {
+            checkVersion(id, version);
+            logger.warn("Trying to delete non-existent student with id = {}", id);
+            return;
+        }
+        eventPublisher.publishEvent(new StudentChangedEvent(snapshot(id, prior), null));
+    }
+
+    /**
+     * Tells a missing student from a version mismatch once a conditional write matched no row;
+     * only that failure path pays for the extra query.
+     */
+    private void checkVersion(long id, Long version) {
+        if (version != null && studentRepository.existsById(id)) {
+            logger.warn("Student with id = {} is no longer at version {}", id, version);
+            throw new OptimisticLockingFailureException("Student " + id + " is no longer at version " + version);
+        }
+    }
+
+    private static StudentSnapshot snapshot(long id, StudentRepository.PriorState prior) {
+        return new StudentSnapshot(id, prior.getName(), prior.getAge(), prior.getFacultyId());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the cursor is malformed or belongs to another order
+     */
+    public CursorPage<StudentSummary> getStudentsPage(ListingOrder order, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+        logger.debug("Invoked method to list students by {}, page size = {}", order, pageSize);
+        ListingCursor after = ListingCursor.decode(cursor, order);
+        List<StudentSummary> students = order == ListingOrder.NAME
+                ? studentRepository.findSummariesAfterName(after.name(), after.id(), Limit.of(pageSize + 1))
+                : studentRepository.findSummariesAfterId(after.id(), Limit.of(pageSize + 1));
+        return ListingCursor.page(students, pageSize, order, StudentSummary::id, StudentSummary::name);
     }
 
     public List<Student> getStudentsByAge(int age) {
         logger.debug("Invoked method to list students by age = {}", age);
-        return studentRepository.findAll()
-                .stream()
-                .filter(student -> student.getAge() == age)
-                .toList();
+        return studentRepository.findByAge(age);
     }
 
     public Collection<Student> getStudentsByAgeRange(int min, int max) {
@@ -66,7 +254,51 @@ public class StudentService {
         if (min > max) {
             logger.warn("Invalid age range: min {} is greater than max {}",min,max);
         }
-        return studentRepository.findByAgeBetween(min, max);
+        long[] ids = studentAgeIndex.idsBetween(min, max);
+        if (ids == null) {
+            return studentRepository.findByAgeBetween(min, max);
+        }
+        List<Student> students = new ArrayList<>(ids.length);
+        for (int from = 0; from < ids.length; from += MAX_IDS_PER_QUERY) {
+            long[] chunk = Arrays.copyOfRange(ids, from, Math.min(ids.length, from + MAX_IDS_PER_QUERY));
+            students.addAll(studentRepository.findAllById(Arrays.stream(chunk).boxed().toList()));
+        }
+        return students;
+    }
+
+    public long countStudentsByAgeRange(int min, int max) {
+        logger.debug("Invoked method to count students aging between {} and {}", min, max);
+        long count = studentAgeIndex.countBetween(min, max);
+        return count >= 0 ? count : studentRepository.countByAgeBetween(min, max);
+    }
+
+    /**
+     * Students by id with one query, in request order, plus the ids that matched no student.
+     *
+     * @throws IllegalArgumentException if too many ids are requested at once
+     */
+    public BatchLookup<Student> getStudents(List<Long> ids) {
+        List<Long> distinct = BatchLookups.distinct(ids);
+        logger.debug("Invoked method to get {} students by id", distinct.size());
+        return BatchLookups.inRequestOrder(distinct, studentRepository.findAllWithFacultyByIdIn(distinct),
+                Student::getId, Function.identity());
+    }
+
+    /**
+     * The faculty of each student with one query, in request order, plus the ids that matched
+     * no student. Faculties come as summaries, without their students.
+     *
+     * @throws IllegalArgumentException if too many ids are requested at once
+     */
+    public BatchLookup<StudentFaculty> getFacultiesOfStudents(List<Long> studentIds) {
+        List<Long> distinct = BatchLookups.distinct(studentIds);
+        logger.debug("Invoked method to get faculties of {} students", distinct.size());
+        return BatchLookups.inRequestOrder(distinct, studentRepository.findAllWithFacultyByIdIn(distinct),
+                Student::getId, student -> {
+                    Faculty faculty = student.getFaculty();
+                    return new StudentFaculty(student.getId(), faculty == null ? null
+                            : new FacultySummary(faculty.getId(), faculty.getName(), faculty.getColor()));
+                });
     }
 
     public Faculty getFacultyOfStudent(long studentId) {
@@ -81,12 +313,32 @@ public class StudentService {
 
     public long getStudentCount() {
         logger.info("Invoked method to get total student count");
-        return studentRepository.getStudentCount();
+        return studentAggregates.getStats().count();
     }
 
     public double getAverageStudentAge() {
         logger.info("Invoked method to get average student age");
-        return studentRepository.getAverageStudentAge();
+        return studentAggregates.getStats().averageAge();
+    }
+
+    public StudentStats getStudentStats() {
+        logger.debug("Invoked method to get student statistics");
+        return studentAggregates.getStats();
+    }
+
+    public AgeHistogram getAgeHistogram(int bucketWidth) {
+        logger.debug("Invoked method to get student age histogram with bucket width {}", bucketWidth);
+        return studentAnalytics.histogram(bucketWidth);
+    }
+
+    public List<AgePercentile> getAgePercentiles(double[] percentiles) {
+        logger.debug("Invoked method to get student age percentiles {}", percentiles);
+        return studentAnalytics.percentiles(percentiles);
+    }
+
+    public List<FacultyAgeStats> getAgeStatsByFaculty() {
+        logger.debug("Invoked method to get student age statistics by faculty");
+        return studentAnalytics.byFaculty();
     }
 
     public List<Student> getLastFiveStudents() {
@@ -96,19 +348,18 @@ public class StudentService {
 
     public List<String> getStudentNamesStartingWithA() {
         logger.info("Invoked method to get student names starting with 'А'");
-        return studentRepository.findAll().stream()
-                .map(Student::getName)
+        return studentNameIndex.findByPrefix("А", Integer.MAX_VALUE).stream()
                 .map(String::toUpperCase)
-                .filter(name -> name.startsWith("А"))
-                .sorted()
                 .toList();
     }
 
+    public List<String> getStudentNamesByPrefix(String prefix, int limit) {
+        logger.debug("Invoked method to get student names starting with '{}', limit = {}", prefix, limit);
+        return studentNameIndex.findByPrefix(prefix, Math.max(0, Math.min(limit, MAX_NAMES_LIMIT)));
+    }
+
     public double getAverageAge() {
-        logger.info("Invoked method to calculate average student age using Stream API");
-        return studentRepository.findAll().stream()
-                .mapToInt(Student::getAge)
-                .average()
-                .orElse(0.0);
+        logger.info("Invoked method to calculate average student age");
+        return studentAggregates.getStats().averageAge();
     }
 }
@@ -0,0 +1,43 @@
+package ru.hogwarts.school.storage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Content-addressed storage for avatar originals and renditions.
+ * Keys are the hex SHA-256 of the stored bytes, so storing the same content twice yields the same key.
+ */
+public interface BlobStore {
+
+    /**
+     * Stores the bytes and returns their key.
+     */
+    String put(byte[] data) throws IOException;
+
+    /**
+     * Creates an empty file that can be filled and then handed to {@link #putFile(Path)}.
+     * It lives on the same file system as the store, so moving it into place is a rename.
+     */
+    Path createStagingFile() throws IOException;
+
+    /**
+     * Moves a staging file into the store and returns its key. The staging file is gone afterwards.
+     */
+    String putFile(Path stagingFile) throws IOException;
+
+    /**
+     * Same as {@link #putFile(Path)} for a file whose key was computed while it was written.
+     */
+    void putFile(Path stagingFile, String key) throws IOException;
+
+    byte[] read(String key) throws IOException;
+
+    /**
+     * Returns the file region holding the blob, for zero-copy transfers.
+     */
+    BlobRegion locate(String key) throws IOException;
+
+    boolean exists(String key);
+
+    void delete(String key) throws IOException;
+}
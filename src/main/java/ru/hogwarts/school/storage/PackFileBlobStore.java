@@ -0,0 +1,309 @@
+package ru.hogwarts.school.storage;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Appends blobs to a few large pack files instead of keeping one file per blob.
+ * <p>
+ * A pack is written once, front to back, and sealed when it reaches
+ * {@code avatar.storage.pack.max-size}. Where each blob lives is kept in memory and in an
+ * append-only index log that is replayed on startup; a blob is appended and forced to disk
+ * before its index line is written, so a crash can only lose the blob being written. Reads go
+ * through a read-only mapping of the pack, and {@link #locate} hands out the blob's region of
+ * the pack file so downloads can still use sendfile.
+ * <p>
+ * Deleting a blob only drops it from the index; its bytes stay in the pack. Blobs found in the
+ * one-file-per-blob layouts are appended to packs on startup, so switching to this store needs
+ * no separate migration.
+ */
+@Component
+@ConditionalOnProperty(name = "avatar.storage.type", havingValue = "pack")
+public class PackFileBlobStore implements BlobStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(PackFileBlobStore.class);
+
+    /** A mapping cannot be larger than that. */
+    private static final long MAX_PACK_SIZE = Integer.MAX_VALUE;
+
+    private final Path root;
+    private final Path staging;
+    private final Path packDirectory;
+    private final long maxPackSize;
+
+    private final Map<String, PackEntry> index = new ConcurrentHashMap<>();
+    private final Map<Integer, Pack> packs = new ConcurrentHashMap<>();
+
+    /** Guarded by {@code this}. */
+    private Pack activePack;
+    private BufferedWriter indexLog;
+
+    private record PackEntry(int pack, long offset, long length) {
+    }
+
+    private static final class Pack {
+        final int id;
+        final Path file;
+        final FileChannel channel;
+        /** Replaced by a larger one when a read goes past its end. */
+        volatile MappedByteBuffer mapped;
+
+        Pack(int id, Path file, FileChannel channel) {
+            this.id = id;
+            this.file = file;
+            this.channel = channel;
+        }
+    }
+
+    public PackFileBlobStore(@Value("${avatar.blob-store.path}") String root,
+                             @Value("${avatar.storage.pack.max-size:268435456}") long maxPackSize) throws IOException {
+        this.root = Path.of(root);
+        this.staging = this.root.resolve("staging");
+        this.packDirectory = this.root.resolve("packs");
+        this.maxPackSize = Math.min(maxPackSize, MAX_PACK_SIZE);
+        Files.createDirectories(staging);
+        Files.createDirectories(packDirectory);
+
+        openPacks();
+        replayIndex();
+        indexLog = Files.newBufferedWriter(packDirectory.resolve("index.log"), StandardCharsets.US_ASCII, CREATE, APPEND);
+        importLooseBlobs();
+    }
+
+    @PreDestroy
+    synchronized void close() throws IOException {
+        indexLog.close();
+        for (Pack pack : packs.values()) {
+            pack.channel.close();
+        }
+    }
+
+    @Override
+    public String put(byte[] data) throws IOException {
+        String key = ContentHashes.sha256(data);
+        if (index.containsKey(key)) {
+            return key;
+        }
+        synchronized (this) {
+            if (!index.containsKey(key)) {
+                Pack pack = packFor(data.length);
+                long offset = pack.channel.size();
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                while (buffer.hasRemaining()) {
+                    pack.channel.write(buffer, offset + buffer.position());
+                }
+                commit(key, pack, offset, data.length);
+            }
+        }
+        logger.debug("Stored blob {} ({} bytes)", key, data.length);
+        return key;
+    }
+
+    @Override
+    public Path createStagingFile() throws IOException {
+        return Files.createTempFile(staging, "blob-", ".tmp");
+    }
+
+    @Override
+    public String putFile(Path stagingFile) throws IOException {
+        String key = ContentHashes.sha256(stagingFile);
+        putFile(stagingFile, key);
+        return key;
+    }
+
+    @Override
+    public void putFile(Path stagingFile, String key) throws IOException {
+        ContentHashes.checkKey(key);
+        synchronized (this) {
+            if (!index.containsKey(key)) {
+                try (FileChannel in = FileChannel.open(stagingFile, READ)) {
+                    long length = in.size();
+                    Pack pack = packFor(length);
+                    long offset = pack.channel.size();
+                    long position = 0;
+                    while (position < length) {
+                        position += in.transferTo(position, length - position, pack.channel.position(offset + position));
+                    }
+                    commit(key, pack, offset, length);
+                }
+                logger.debug("Stored blob {} from {}", key, stagingFile.getFileName());
+            }
+        }
+        Files.delete(stagingFile);
+    }
+
+    @Override
+    public byte[] read(String key) throws IOException {
+        PackEntry entry = entryOf(key);
+        Pack pack = packs.get(entry.pack());
+        byte[] data = new byte[(int) entry.length()];
+        mappingOf(pack, entry.offset() + entry.length()).get((int) entry.offset(), data);
+        return data;
+    }
+
+    @Override
+    public BlobRegion locate(String key) throws IOException {
+        PackEntry entry = entryOf(key);
+        return new BlobRegion(packs.get(entry.pack()).file, entry.offset(), entry.length());
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return index.containsKey(key);
+    }
+
+    @Override
+    public synchronized void delete(String key) throws IOException {
+        if (index.remove(key) != null) {
+            indexLog.write("D " + key);
+            indexLog.newLine();
+            indexLog.flush();
+        }
+    }
+
+    private PackEntry entryOf(String key) throws IOException {
+        PackEntry entry = index.get(ContentHashes.checkKey(key));
+        if (entry == null) {
+            throw new NoSuchFileException(key);
+        }
+        return entry;
+    }
+
+    /**
+     * Returns a mapping of the pack that covers at least {@code end} bytes.
+     */
+    private MappedByteBuffer mappingOf(Pack pack, long end) throws IOException {
+        MappedByteBuffer mapped = pack.mapped;
+        if (mapped != null && mapped.capacity() >= end) {
+            return mapped;
+        }
+        synchronized (pack) {
+            mapped = pack.mapped;
+            if (mapped == null || mapped.capacity() < end) {
+                mapped = pack.channel.map(FileChannel.MapMode.READ_ONLY, 0, pack.channel.size());
+                pack.mapped = mapped;
+            }
+            return mapped;
+        }
+    }
+
+    /**
+     * The pack the next blob goes to, starting a new one when it would not fit.
+     */
+    private Pack packFor(long length) throws IOException {
+        if (length > maxPackSize) {
+            throw new IOException("Blob of " + length + " bytes does not fit in a pack");
+        }
+        if (activePack == null || activePack.channel.size() + length > maxPackSize) {
+            int id = activePack == null ? 1 : activePack.id + 1;
+            activePack = openPack(id);
+            logger.info("Started pack file {}", activePack.file.getFileName());
+        }
+        return activePack;
+    }
+
+    private void commit(String key, Pack pack, long offset, long length) throws IOException {
+        pack.channel.force(false);
+        indexLog.write("P " + key + " " + pack.id + " " + offset + " " + length);
+        indexLog.newLine();
+        indexLog.flush();
+        index.put(key, new PackEntry(pack.id, offset, length));
+    }
+
+    private Pack openPack(int id) throws IOException {
+        Path file = packDirectory.resolve(String.format("pack-%05d.dat", id));
+        Pack pack = new Pack(id, file, FileChannel.open(file, CREATE, READ, WRITE));
+        packs.put(id, pack);
+        return pack;
+    }
+
+    private void openPacks() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(packDirectory)) {
+            files = list.filter(file -> file.getFileName().toString().matches("pack-\\d+\\.dat")).sorted().toList();
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            activePack = openPack(Integer.parseInt(name.substring(5, name.length() - 4)));
+        }
+    }
+
+    private void replayIndex() throws IOException {
+        Path log = packDirectory.resolve("index.log");
+        if (!Files.exists(log)) {
+            return;
+        }
+        byte[] content = Files.readAllBytes(log);
+        int end = content.length;
+        while (end > 0 && content[end - 1] != '\n') {
+            end--;
+        }
+        if (end < content.length) {
+            // a line cut short by a crash; the next record must not be appended to it
+            logger.warn("Dropping damaged pack index line: {}", new String(content, end, content.length - end, StandardCharsets.US_ASCII));
+            try (FileChannel channel = FileChannel.open(log, WRITE)) {
+                channel.truncate(end);
+            }
+        }
+        for (String line : new String(content, 0, end, StandardCharsets.US_ASCII).lines().toList()) {
+            String[] parts = line.split(" ");
+            try {
+                if (parts.length == 5 && parts[0].equals("P") && packs.containsKey(Integer.parseInt(parts[2]))) {
+                    index.put(parts[1], new PackEntry(Integer.parseInt(parts[2]), Long.parseLong(parts[3]), Long.parseLong(parts[4])));
+                    continue;
+                }
+                if (parts.length == 2 && parts[0].equals("D")) {
+                    index.remove(parts[1]);
+                    continue;
+                }
+            } catch (NumberFormatException e) {
+                // handled below
+            }
+            logger.warn("Skipping damaged pack index line: {}", line);
+        }
+        logger.info("Loaded {} blobs in {} pack files", index.size(), packs.size());
+    }
+
+    /**
+     * Appends blobs stored one file per blob, flat or sharded, and removes the files.
+     */
+    private void importLooseBlobs() throws IOException {
+        List<Path> looseBlobs = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(root, 3)) {
+            files.filter(file -> !file.startsWith(staging) && !file.startsWith(packDirectory))
+                    .filter(file -> ContentHashes.isKey(file.getFileName().toString()))
+                    .filter(Files::isRegularFile)
+                    .forEach(looseBlobs::add);
+        }
+        for (Path blob : looseBlobs) {
+            putFile(blob, blob.getFileName().toString());
+        }
+        if (!looseBlobs.isEmpty()) {
+            logger.info("Moved {} loose blobs into pack files", looseBlobs.size());
+        }
+    }
+}
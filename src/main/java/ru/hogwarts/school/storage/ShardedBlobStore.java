@@ -0,0 +1,124 @@
+package ru.hogwarts.school.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * Keeps every blob in its own file under {@code avatar.blob-store.path}, fanned out over two
+ * levels of directories by the first hex digits of the key ({@code 3f/a2/3fa2...}). That caps
+ * every directory at 256 entries at the top levels and about n / 65536 files at the bottom.
+ * <p>
+ * Blobs left in the root by the earlier flat layout are moved into their shards on startup.
+ */
+@Component
+@ConditionalOnProperty(name = "avatar.storage.type", havingValue = "sharded", matchIfMissing = true)
+public class ShardedBlobStore implements BlobStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedBlobStore.class);
+
+    private final Path root;
+    private final Path staging;
+
+    public ShardedBlobStore(@Value("${avatar.blob-store.path}") String root) throws IOException {
+        this.root = Path.of(root);
+        this.staging = this.root.resolve("staging");
+        Files.createDirectories(staging);
+        moveFlatBlobs();
+    }
+
+    @Override
+    public String put(byte[] data) throws IOException {
+        String key = ContentHashes.sha256(data);
+        Path target = pathOf(key);
+        if (Files.exists(target)) {
+            return key;
+        }
+        Files.createDirectories(target.getParent());
+        Path stagingFile = createStagingFile();
+        try {
+            Files.write(stagingFile, data);
+            Files.move(stagingFile, target, REPLACE_EXISTING, ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(stagingFile);
+        }
+        logger.debug("Stored blob {} ({} bytes)", key, data.length);
+        return key;
+    }
+
+    @Override
+    public Path createStagingFile() throws IOException {
+        return Files.createTempFile(staging, "blob-", ".tmp");
+    }
+
+    @Override
+    public String putFile(Path stagingFile) throws IOException {
+        String key = ContentHashes.sha256(stagingFile);
+        putFile(stagingFile, key);
+        return key;
+    }
+
+    @Override
+    public void putFile(Path stagingFile, String key) throws IOException {
+        Path target = pathOf(key);
+        if (Files.exists(target)) {
+            Files.delete(stagingFile);
+        } else {
+            Files.createDirectories(target.getParent());
+            Files.move(stagingFile, target, REPLACE_EXISTING, ATOMIC_MOVE);
+            logger.debug("Stored blob {} from {}", key, stagingFile.getFileName());
+        }
+    }
+
+    @Override
+    public byte[] read(String key) throws IOException {
+        return Files.readAllBytes(pathOf(key));
+    }
+
+    @Override
+    public BlobRegion locate(String key) throws IOException {
+        Path path = pathOf(key);
+        return new BlobRegion(path, 0, Files.size(path));
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(pathOf(key));
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(pathOf(key));
+    }
+
+    private Path pathOf(String key) {
+        ContentHashes.checkKey(key);
+        return root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+
+    private void moveFlatBlobs() throws IOException {
+        List<Path> flatBlobs;
+        try (Stream<Path> files = Files.list(root)) {
+            flatBlobs = files.filter(file -> ContentHashes.isKey(file.getFileName().toString())).toList();
+        }
+        for (Path blob : flatBlobs) {
+            Path target = pathOf(blob.getFileName().toString());
+            Files.createDirectories(target.getParent());
+            Files.move(blob, target, REPLACE_EXISTING, ATOMIC_MOVE);
+        }
+        if (!flatBlobs.isEmpty()) {
+            logger.info("Moved {} blobs from the flat layout into shards", flatBlobs.size());
+        }
+    }
+}
@@ -0,0 +1,5 @@
+-- liquibase formatted sql
+
+-- changeset vdublyanskiy:3
+ALTER TABLE avatar ADD COLUMN IF NOT EXISTS content_hash VARCHAR(255);
+CREATE INDEX IF NOT EXISTS idx_avatar_content_hash ON avatar(content_hash);
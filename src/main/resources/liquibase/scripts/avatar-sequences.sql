@@ -0,0 +1,25 @@
+-- liquibase formatted sql
+
+-- changeset vdublyanskiy:4
+CREATE SEQUENCE IF NOT EXISTS avatar_seq INCREMENT BY 50;
+SELECT setval('avatar_seq', (SELECT COALESCE(MAX(id), 0) FROM avatar) + 50);
+
+-- changeset vdublyanskiy:5 splitStatements:false
+DO $$
+BEGIN
+    CREATE SEQUENCE IF NOT EXISTS avatar_rendition_seq INCREMENT BY 50;
+    IF to_regclass('avatar_rendition') IS NOT NULL THEN
+        PERFORM setval('avatar_rendition_seq', (SELECT COALESCE(MAX(id), 0) FROM avatar_rendition) + 50);
+    END IF;
+END
+$$;
+
+-- changeset vdublyanskiy:13 splitStatements:false
+DO $$
+BEGIN
+    CREATE SEQUENCE IF NOT EXISTS avatar_regeneration_job_seq INCREMENT BY 50;
+    IF to_regclass('avatar_regeneration_job') IS NOT NULL THEN
+        PERFORM setval('avatar_regeneration_job_seq', (SELECT COALESCE(MAX(id), 0) FROM avatar_regeneration_job) + 50);
+    END IF;
+END
+$$;
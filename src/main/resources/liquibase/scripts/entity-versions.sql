@@ -0,0 +1,7 @@
+-- liquibase formatted sql
+
+-- changeset vdublyanskiy:10
+ALTER TABLE student ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+-- changeset vdublyanskiy:11
+ALTER TABLE faculty ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
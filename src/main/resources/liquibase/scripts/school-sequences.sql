@@ -0,0 +1,11 @@
+-- liquibase formatted sql
+
+-- changeset vdublyanskiy:8
+CREATE SEQUENCE IF NOT EXISTS student_seq INCREMENT BY 50;
+ALTER SEQUENCE student_seq INCREMENT BY 50;
+SELECT setval('student_seq', (SELECT COALESCE(MAX(id), 0) FROM student) + 50);
+
+-- changeset vdublyanskiy:9
+CREATE SEQUENCE IF NOT EXISTS faculty_seq INCREMENT BY 50;
+ALTER SEQUENCE faculty_seq INCREMENT BY 50;
+SELECT setval('faculty_seq', (SELECT COALESCE(MAX(id), 0) FROM faculty) + 50);
@@ -0,0 +1,15 @@
+-- liquibase formatted sql
+
+-- changeset vdublyanskiy:6
+CREATE INDEX IF NOT EXISTS idx_student_age ON student(age);
+
+-- changeset vdublyanskiy:7
+CREATE INDEX IF NOT EXISTS idx_student_faculty_id ON student(faculty_id);
+
+-- changeset vdublyanskiy:12
+CREATE INDEX IF NOT EXISTS idx_student_faculty_id_id ON student(faculty_id, id);
+DROP INDEX IF EXISTS idx_student_faculty_id;
+
+-- changeset vdublyanskiy:14
+CREATE INDEX IF NOT EXISTS idx_student_listing_name ON student((COALESCE(name, '')), id);
+CREATE INDEX IF NOT EXISTS idx_faculty_listing_name ON faculty((COALESCE(name, '')), id);
@@ -0,0 +1,51 @@
+package ru.hogwarts.school;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Age lookups must be index scans, so their cost follows the number of matching rows rather
+ * than the size of the table. Sequential scans are disabled for the session because on a small
+ * test table the planner would rightly prefer them.
+ */
+@SpringBootTest
+public class StudentIndexTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String plan(String query) {
+        return jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET enable_seqscan = off");
+                StringBuilder plan = new StringBuilder();
+                try (ResultSet rs = statement.executeQuery("EXPLAIN " + query)) {
+                    while (rs.next()) {
+                        plan.append(rs.getString(1)).append('\n');
+                    }
+                } finally {
+                    statement.execute("RESET enable_seqscan");
+                }
+                return plan.toString();
+            }
+        });
+    }
+
+    @Test
+    void testAgeEqualityUsesIndex() {
+        assertThat(plan("SELECT * FROM student WHERE age = 17")).contains("idx_student_age");
+    }
+
+    @Test
+    void testAgeRangeUsesIndex() {
+        assertThat(plan("SELECT * FROM student WHERE age BETWEEN 11 AND 17")).contains("idx_student_age");
+    }
+}
@@ -0,0 +1,71 @@
+package ru.hogwarts.school.archive;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+public class ArchiveReaderTest {
+
+    @Test
+    void testReadZipEntriesSkippingDirectories() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry("photos/"));
+            zip.putNextEntry(new ZipEntry("photos/1.png"));
+            zip.write("first".getBytes(StandardCharsets.US_ASCII));
+            zip.putNextEntry(new ZipEntry("2.png"));
+            zip.write("second".getBytes(StandardCharsets.US_ASCII));
+        }
+
+        try (ArchiveReader reader = ArchiveReader.open("avatars.zip", new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertThat(reader.nextEntry()).isEqualTo("photos/1.png");
+            // left unread on purpose
+            assertThat(reader.nextEntry()).isEqualTo("2.png");
+            assertThat(new String(reader.entryStream().readAllBytes(), StandardCharsets.US_ASCII)).isEqualTo("second");
+            assertThat(reader.nextEntry()).isNull();
+        }
+    }
+
+    @Test
+    void testReadTarEntriesAcrossPadding() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeTarEntry(bytes, "photos/", '5', new byte[0]);
+        writeTarEntry(bytes, "photos/1.png", '0', new byte[700]);
+        writeTarEntry(bytes, "2.png", '0', "second".getBytes(StandardCharsets.US_ASCII));
+        bytes.write(new byte[1024]);
+
+        try (ArchiveReader reader = ArchiveReader.open("avatars.tar", new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertThat(reader.nextEntry()).isEqualTo("photos/1.png");
+            assertThat(reader.entryStream().readAllBytes()).hasSize(700);
+            assertThat(reader.nextEntry()).isEqualTo("2.png");
+            assertThat(new String(reader.entryStream().readAllBytes(), StandardCharsets.US_ASCII)).isEqualTo("second");
+            assertThat(reader.nextEntry()).isNull();
+        }
+    }
+
+    @Test
+    void testRejectUnknownArchiveType() {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> ArchiveReader.open("avatars.rar", new ByteArrayInputStream(new byte[0])));
+    }
+
+    private static void writeTarEntry(ByteArrayOutputStream out, String name, char type, byte[] data) throws IOException {
+        byte[] header = new byte[512];
+        byte[] nameBytes = name.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(nameBytes, 0, header, 0, nameBytes.length);
+        byte[] size = String.format("%011o", data.length).getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(size, 0, header, 124, size.length);
+        header[156] = (byte) type;
+        out.write(header);
+        out.write(data);
+        out.write(new byte[(512 - data.length % 512) % 512]);
+    }
+}
@@ -0,0 +1,73 @@
+package ru.hogwarts.school.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BoundedCacheTest {
+
+    private final BoundedCache<String, byte[]> cache = new BoundedCache<>(10, value -> value.length);
+
+    @Test
+    void testEvictsLeastRecentlyUsedOverBudget() {
+        cache.put("a", new byte[4]);
+        cache.put("b", new byte[4]);
+        cache.get("a");
+        cache.put("c", new byte[4]);
+
+        assertThat(cache.get("a")).isNotNull();
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("c")).isNotNull();
+        assertThat(cache.stats().evictions()).isEqualTo(1);
+        assertThat(cache.stats().residentWeight()).isEqualTo(8);
+    }
+
+    @Test
+    void testSkipsValuesOverBudget() {
+        cache.put("big", new byte[11]);
+
+        assertThat(cache.get("big")).isNull();
+        assertThat(cache.stats().entries()).isZero();
+    }
+
+    @Test
+    void testStaleLoadIsNotCachedAfterInvalidation() {
+        long generation = cache.generation();
+        cache.invalidate("a");
+        cache.putIfGeneration("a", new byte[1], generation);
+
+        assertThat(cache.get("a")).isNull();
+    }
+
+    @Test
+    void testCountsHitsAndMisses() {
+        cache.put("a", new byte[1]);
+        cache.get("a");
+        cache.get("b");
+
+        CacheStats stats = cache.stats();
+        assertThat(stats.hits()).isEqualTo(1);
+        assertThat(stats.misses()).isEqualTo(1);
+        assertThat(stats.hitRate()).isEqualTo(0.5);
+    }
+
+    @Test
+    void testExpiresEntriesAfterTimeToLive() {
+        long[] now = {0};
+        BoundedCache<String, byte[]> expiring = new BoundedCache<>(10, value -> value.length, Duration.ofSeconds(5), () -> now[0]);
+        expiring.put("a", new byte[1]);
+
+        now[0] = Duration.ofSeconds(4).toNanos();
+        assertThat(expiring.get("a")).isNotNull();
+        now[0] = Duration.ofSeconds(5).toNanos();
+        assertThat(expiring.get("a")).isNull();
+
+        CacheStats stats = expiring.stats();
+        assertThat(stats.expirations()).isEqualTo(1);
+        assertThat(stats.misses()).isEqualTo(1);
+        assertThat(stats.entries()).isZero();
+        assertThat(stats.residentWeight()).isZero();
+    }
+}
@@ -0,0 +1,198 @@
+package ru.hogwarts.school.controller;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.hogwarts.school.dto.AvatarImportReport;
+import ru.hogwarts.school.dto.AvatarImportResult;
+import ru.hogwarts.school.dto.AvatarSummary;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.dto.RegenerationProgress;
+import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.AvatarUploadStatus;
+import ru.hogwarts.school.model.RegenerationStatus;
+import ru.hogwarts.school.service.AvatarImportService;
+import ru.hogwarts.school.service.AvatarRegenerationService;
+import ru.hogwarts.school.service.AvatarService;
+import ru.hogwarts.school.storage.BlobRegion;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(AvatarController.class)
+public class AvatarControllerWebMvcTest {
+
+    private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.US_ASCII);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private AvatarService avatarService;
+
+    @MockitoBean
+    private AvatarImportService avatarImportService;
+
+    @MockitoBean
+    private AvatarRegenerationService avatarRegenerationService;
+
+    @TempDir
+    Path tempDir;
+
+    private Avatar storedAvatar() throws IOException {
+        Path file = tempDir.resolve("blob");
+        Files.write(file, CONTENT);
+        when(avatarService.locateOriginal(any(Avatar.class))).thenReturn(new BlobRegion(file, 0, CONTENT.length));
+
+        Avatar avatar = new Avatar();
+        avatar.setFileSize(CONTENT.length);
+        avatar.setMediaType("image/png");
+        avatar.setContentHash("abc123");
+        avatar.setUpdatedAt(Instant.parse("2025-01-01T00:00:00Z"));
+        return avatar;
+    }
+
+    @Test
+    void testDownloadAvatar() throws Exception {
+        when(avatarService.findAvatar(1L)).thenReturn(storedAvatar());
+
+        mockMvc.perform(get("/avatar/1/avatar"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"abc123\""))
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(content().bytes(CONTENT));
+    }
+
+    @Test
+    void testDownloadAvatarNotModified() throws Exception {
+        when(avatarService.findAvatar(1L)).thenReturn(storedAvatar());
+
+        mockMvc.perform(get("/avatar/1/avatar").header(HttpHeaders.IF_NONE_MATCH, "\"abc123\""))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void testDownloadAvatarRange() throws Exception {
+        when(avatarService.findAvatar(1L)).thenReturn(storedAvatar());
+
+        mockMvc.perform(get("/avatar/1/avatar").header(HttpHeaders.RANGE, "bytes=2-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10"))
+                .andExpect(content().bytes("2345".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    void testDownloadAvatarRangeWithStaleIfRange() throws Exception {
+        when(avatarService.findAvatar(1L)).thenReturn(storedAvatar());
+
+        mockMvc.perform(get("/avatar/1/avatar")
+                        .header(HttpHeaders.RANGE, "bytes=2-5")
+                        .header(HttpHeaders.IF_RANGE, "\"outdated\""))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(CONTENT));
+    }
+
+    @Test
+    void testDownloadAvatarUnsatisfiableRange() throws Exception {
+        when(avatarService.findAvatar(1L)).thenReturn(storedAvatar());
+
+        mockMvc.perform(get("/avatar/1/avatar").header(HttpHeaders.RANGE, "bytes=20-30"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */10"));
+    }
+
+    @Test
+    void testDownloadAvatarOfStudentWithoutAvatar() throws Exception {
+        when(avatarService.findAvatar(1L)).thenReturn(new Avatar());
+
+        mockMvc.perform(get("/avatar/1/avatar"))
+                .andExpect(status().isNotFound())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_LENGTH));
+    }
+
+    @Test
+    void testDownloadAvatarWithMissingBlob() throws Exception {
+        Avatar avatar = storedAvatar();
+        when(avatarService.findAvatar(1L)).thenReturn(avatar);
+        when(avatarService.locateOriginal(avatar)).thenThrow(new NoSuchFileException("abc123"));
+
+        mockMvc.perform(get("/avatar/1/avatar").header(HttpHeaders.RANGE, "bytes=2-5"))
+                .andExpect(status().isNotFound())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void testGetAllAvatarsPaginated() throws Exception {
+        AvatarSummary summary = new AvatarSummary(5L, 7L, "image/png", 1024L);
+        when(avatarService.getAvatarsPage(4L, 1)).thenReturn(new CursorPage<>(List.of(summary), "5"));
+
+        mockMvc.perform(get("/avatar/get-all").param("after", "4").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].studentId").value(7))
+                .andExpect(jsonPath("$.items[0].previewUrl").value("/avatar/7/avatar/preview"))
+                .andExpect(jsonPath("$.nextCursor").value("5"));
+    }
+
+    @Test
+    void testDeleteAvatar() throws Exception {
+        when(avatarService.deleteAvatar(1L)).thenReturn(true);
+
+        mockMvc.perform(delete("/avatar/1/avatar"))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/avatar/2/avatar"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testImportAvatars() throws Exception {
+        MockMultipartFile archive = new MockMultipartFile("archive", "avatars.zip", "application/zip", new byte[]{1});
+        when(avatarImportService.importArchive(any())).thenReturn(new AvatarImportReport(1, 1, null, List.of(
+                new AvatarImportResult("1.png", 1L, AvatarUploadStatus.COMPLETED, null),
+                new AvatarImportResult("cat.png", null, AvatarUploadStatus.FAILED, "Entry name is not a student id"))));
+
+        mockMvc.perform(multipart("/avatar/import").file(archive))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.entries[1].status").value("FAILED"));
+    }
+
+    @Test
+    void testImportAvatarsUnsupportedArchive() throws Exception {
+        MockMultipartFile archive = new MockMultipartFile("archive", "avatars.rar", "application/octet-stream", new byte[]{1});
+        when(avatarImportService.importArchive(any())).thenThrow(new IllegalArgumentException("Unsupported archive type"));
+
+        mockMvc.perform(multipart("/avatar/import").file(archive))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testStartRegenerationWhileRunning() throws Exception {
+        RegenerationProgress running = new RegenerationProgress(3, RegenerationStatus.RUNNING, 200, 1, 1000, 250,
+                40.0, 20L, Instant.parse("2025-01-01T00:00:00Z"), Instant.parse("2025-01-01T00:00:05Z"));
+        when(avatarRegenerationService.start()).thenReturn(null);
+        when(avatarRegenerationService.getProgress()).thenReturn(running);
+
+        mockMvc.perform(post("/avatar/regeneration"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.jobId").value(3))
+                .andExpect(jsonPath("$.etaSeconds").value(20));
+    }
+}
@@ -4,19 +4,31 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.beans.factory.annotation.Autowired;
+import ru.hogwarts.school.dto.BatchLookup;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.dto.FacultyPatch;
+import ru.hogwarts.school.dto.FacultySummary;
+import ru.hogwarts.school.dto.ListingOrder;
+import ru.hogwarts.school.dto.StudentSummary;
 import ru.hogwarts.school.model.Faculty;
-import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.service.BulkWriteService;
 import ru.hogwarts.school.service.FacultyService;
+import ru.hogwarts.school.service.StudentExportService;
 
+import java.io.OutputStream;
 import java.util.List;
-import java.util.Set;
 
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -30,6 +42,12 @@ public class FacultyControllerWebMvcTest {
     @MockitoBean
     private FacultyService facultyService;
 
+    @MockitoBean
+    private BulkWriteService bulkWriteService;
+
+    @MockitoBean
+    private StudentExportService studentExportService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -73,6 +91,37 @@ public class FacultyControllerWebMvcTest {
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void testDeleteFacultyWithStaleVersionConflicts() throws Exception {
+        doThrow(new OptimisticLockingFailureException("stale")).when(facultyService).deleteFaculty(1L, 3L);
+
+        mockMvc.perform(delete("/faculty/1").param("version", "3"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void testGetFacultiesByIds() throws Exception {
+        when(facultyService.getFaculties(List.of(4L, 2L))).thenReturn(new BatchLookup<>(
+                List.of(new Faculty(2L, "Gryffindor", "Red")), List.of(4L)));
+
+        mockMvc.perform(get("/faculty").param("ids", "4,2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].name").value("Gryffindor"))
+                .andExpect(jsonPath("$.missing[0]").value(4));
+    }
+
+    @Test
+    void testPatchFaculty() throws Exception {
+        Faculty patched = new Faculty(1L, "Slytherin", "Silver");
+        when(facultyService.patchFaculty(1L, new FacultyPatch(null, "Silver", null))).thenReturn(patched);
+
+        mockMvc.perform(patch("/faculty/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"color\":\"Silver\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.color").value("Silver"));
+    }
+
     @Test
     void testFindByColor() throws Exception {
         when(facultyService.findByColor("Red")).thenReturn(List.of(new Faculty(2L, "Gryffindor", "Red")));
@@ -93,15 +142,61 @@ public class FacultyControllerWebMvcTest {
 
     @Test
     void testGetStudentsOfFaculty() throws Exception {
-        Student student1 = new Student(1L, "Harry Potter", 15);
-        Student student2 = new Student(2L, "Hermione Granger", 15);
-
-        when(facultyService.getStudentsOfFaculty(1L)).thenReturn(Set.of(student1, student2));
-
-        mockMvc.perform(get("/faculty/1/showStudents"))
+        when(facultyService.facultyExists(1L)).thenReturn(true);
+        doAnswer(invocation -> {
+            invocation.getArgument(1, OutputStream.class).write(objectMapper.writeValueAsBytes(List.of(
+                    new StudentSummary(1L, "Harry Potter", 15, 1L), new StudentSummary(2L, "Hermione Granger", 15, 1L))));
+            return null;
+        }).when(studentExportService).exportStudentsOfFaculty(eq(1L), any());
+
+        MvcResult result = mockMvc.perform(get("/faculty/1/showStudents"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.length()").value(2))
                 .andExpect(jsonPath("$[*].name", containsInAnyOrder("Harry Potter", "Hermione Granger")));
     }
+
+    @Test
+    void testGetStudentsOfUnknownFaculty() throws Exception {
+        when(facultyService.facultyExists(9L)).thenReturn(false);
+
+        mockMvc.perform(get("/faculty/9/showStudents"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testListStudentsOfFaculty() throws Exception {
+        when(facultyService.getStudentsOfFacultyPage(1L, "abc", 1)).thenReturn(
+                new CursorPage<>(List.of(new StudentSummary(4L, "Ron Weasley", 15, 1L)), "def"));
+
+        mockMvc.perform(get("/faculty/1/students").param("cursor", "abc").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].name").value("Ron Weasley"))
+                .andExpect(jsonPath("$.nextCursor").value("def"));
+    }
+
+    @Test
+    void testCountStudentsOfFaculty() throws Exception {
+        when(facultyService.countStudentsOfFaculty(1L)).thenReturn(312L);
+
+        mockMvc.perform(get("/faculty/1/students/count"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("312"));
+    }
+
+    @Test
+    void testListFacultiesById() throws Exception {
+        when(facultyService.getFacultiesPage(ListingOrder.ID, null, 2))
+                .thenReturn(new CursorPage<>(List.of(new FacultySummary(1L, "Gryffindor", "Red"),
+                        new FacultySummary(2L, "Slytherin", "Green")), "next"));
+
+        mockMvc.perform(get("/faculty/list").param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[1].color").value("Green"))
+                .andExpect(jsonPath("$.items[0].students").doesNotExist())
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
 }
 //commit
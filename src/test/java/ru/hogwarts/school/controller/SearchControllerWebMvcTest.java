@@ -0,0 +1,49 @@
+package ru.hogwarts.school.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.hogwarts.school.dto.SearchHit;
+import ru.hogwarts.school.service.SearchService;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(SearchController.class)
+public class SearchControllerWebMvcTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private SearchService searchService;
+
+    @Test
+    void testSearch() throws Exception {
+        when(searchService.search("hary", 10)).thenReturn(List.of(
+                new SearchHit("student", 3L, "name", "Harry", 0.7),
+                new SearchHit("faculty", 1L, "name", "Gryffindor", 0.5)));
+
+        mockMvc.perform(get("/search").param("q", "hary"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].type").value("student"))
+                .andExpect(jsonPath("$[0].id").value(3))
+                .andExpect(jsonPath("$[1].field").value("name"))
+                .andExpect(jsonPath("$[1].text").value("Gryffindor"));
+    }
+
+    @Test
+    void testSearchRejectsOverlongQuery() throws Exception {
+        when(searchService.search(anyString(), anyInt())).thenThrow(new IllegalArgumentException("too long"));
+
+        mockMvc.perform(get("/search").param("q", "x".repeat(200)))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -6,6 +6,8 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.http.*;
+import ru.hogwarts.school.dto.BulkRowError;
+import ru.hogwarts.school.dto.BulkWriteReport;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 
@@ -45,6 +47,31 @@ public class StudentControllerTest {
         assertThat(response.getBody().getName()).isEqualTo("Harry Potter");
     }
 
+    @Test
+    void testBulkWriteStudents() {
+        String suffix = " " + System.nanoTime();
+        Student existing = new Student();
+        existing.setName("Dean Thomas" + suffix);
+        existing.setAge(16);
+        existing = restTemplate.postForEntity(getBaseUrl(), existing, Student.class).getBody();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_NDJSON);
+        String body = "{\"name\":\"Seamus Finnigan" + suffix + "\",\"age\":16}\n"
+                + "{\"age\":16}\n"
+                + "{\"name\":\"Dean Thomas" + suffix + "\",\"age\":16}\n"
+                + "{\"id\":" + existing.getId() + ",\"name\":\"Dean Thomas" + suffix + "\",\"age\":17}\n";
+
+        ResponseEntity<BulkWriteReport> response = restTemplate.postForEntity(getBaseUrl() + "/bulk",
+                new HttpEntity<>(body, headers), BulkWriteReport.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody().created()).isEqualTo(1);
+        assertThat(response.getBody().updated()).isEqualTo(1);
+        assertThat(response.getBody().errors()).extracting(BulkRowError::row).containsExactly(1, 2);
+        assertThat(restTemplate.getForObject(getBaseUrl() + "/" + existing.getId(), Student.class).getAge()).isEqualTo(17);
+    }
+
     @Test
     void testGetStudentInfo() {
         Student student = new Student();
@@ -79,6 +106,28 @@ public class StudentControllerTest {
         assertThat(response.getBody().getName()).isEqualTo("Ronald Weasley");
     }
 
+    @Test
+    void testEditStudentWithStaleVersionConflicts() {
+        Student student = new Student();
+        student.setName("Cedric Diggory");
+        student.setAge(17);
+
+        student = restTemplate.postForEntity(getBaseUrl(), student, Student.class).getBody();
+        Long id = student.getId();
+
+        student.setAge(18);
+        ResponseEntity<Student> first = restTemplate.exchange(getBaseUrl() + "/" + id, HttpMethod.PUT,
+                new HttpEntity<>(student), Student.class);
+        student.setAge(19);
+        ResponseEntity<Student> stale = restTemplate.exchange(getBaseUrl() + "/" + id, HttpMethod.PUT,
+                new HttpEntity<>(student), Student.class);
+
+        assertThat(first.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(first.getBody().getVersion()).isEqualTo(student.getVersion() + 1);
+        assertThat(stale.getStatusCode()).isEqualTo(HttpStatus.CONFLICT);
+        assertThat(restTemplate.getForObject(getBaseUrl() + "/" + id, Student.class).getAge()).isEqualTo(18);
+    }
+
     @Test
     void testDeleteStudent() {
         Student student = new Student();
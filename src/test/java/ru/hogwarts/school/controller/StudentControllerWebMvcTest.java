@@ -4,17 +4,39 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.beans.factory.annotation.Autowired;
+import ru.hogwarts.school.dto.AgeBucket;
+import ru.hogwarts.school.dto.AgeHistogram;
+import ru.hogwarts.school.dto.BatchLookup;
+import ru.hogwarts.school.dto.BulkRowError;
+import ru.hogwarts.school.dto.BulkWriteReport;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.dto.FacultySummary;
+import ru.hogwarts.school.dto.ListingOrder;
+import ru.hogwarts.school.dto.RowFormat;
+import ru.hogwarts.school.dto.StudentFaculty;
+import ru.hogwarts.school.dto.StudentPatch;
+import ru.hogwarts.school.dto.StudentStats;
+import ru.hogwarts.school.dto.StudentSummary;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.service.BulkWriteService;
+import ru.hogwarts.school.service.StudentExportService;
 import ru.hogwarts.school.service.StudentService;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -28,6 +50,12 @@ public class StudentControllerWebMvcTest {
     @MockitoBean
     private StudentService studentService;
 
+    @MockitoBean
+    private BulkWriteService bulkWriteService;
+
+    @MockitoBean
+    private StudentExportService studentExportService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -67,6 +95,75 @@ public class StudentControllerWebMvcTest {
                 .andExpect(jsonPath("$.age").value(18));
     }
 
+    @Test
+    void testGetStudentsByIds() throws Exception {
+        when(studentService.getStudents(List.of(2L, 1L, 7L))).thenReturn(new BatchLookup<>(
+                List.of(new Student(2L, "Ron", 17), new Student(1L, "Harry", 17)), List.of(7L)));
+
+        mockMvc.perform(get("/student").param("ids", "2,1,7"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].name").value("Ron"))
+                .andExpect(jsonPath("$.items[1].name").value("Harry"))
+                .andExpect(jsonPath("$.missing[0]").value(7));
+    }
+
+    @Test
+    void testGetFacultiesOfStudents() throws Exception {
+        when(studentService.getFacultiesOfStudents(List.of(1L, 2L))).thenReturn(new BatchLookup<>(List.of(
+                new StudentFaculty(1L, new FacultySummary(3L, "Gryffindor", "Red")),
+                new StudentFaculty(2L, null)), List.of()));
+
+        mockMvc.perform(get("/student/faculties").param("ids", "1,2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].faculty.name").value("Gryffindor"))
+                .andExpect(jsonPath("$.items[1].studentId").value(2))
+                .andExpect(jsonPath("$.items[1].faculty").isEmpty());
+    }
+
+    @Test
+    void testGetStudentsByTooManyIdsIsRejected() throws Exception {
+        when(studentService.getStudents(any())).thenThrow(new IllegalArgumentException("too many"));
+
+        mockMvc.perform(get("/student").param("ids", "1,2"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testPatchStudent() throws Exception {
+        Student patched = new Student(1L, "Ron", 19);
+        patched.setVersion(4L);
+        when(studentService.patchStudent(1L, new StudentPatch(null, 19, null, 3L))).thenReturn(patched);
+
+        mockMvc.perform(patch("/student/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"age\":19,\"version\":3}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Ron"))
+                .andExpect(jsonPath("$.version").value(4));
+    }
+
+    @Test
+    void testPatchStudentWithStaleVersionConflicts() throws Exception {
+        when(studentService.patchStudent(Mockito.eq(1L), any(StudentPatch.class)))
+                .thenThrow(new OptimisticLockingFailureException("stale"));
+
+        mockMvc.perform(patch("/student/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"age\":19,\"version\":2}"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void testEditStudentWithUnknownFacultyIsRejected() throws Exception {
+        when(studentService.editStudent(Mockito.eq(1L), any(Student.class)))
+                .thenThrow(new IllegalArgumentException("No faculty with id = 99"));
+
+        mockMvc.perform(put("/student/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Ron\",\"age\":19,\"faculty\":{\"id\":99}}"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void testDeleteStudent() throws Exception {
         mockMvc.perform(delete("/student/1"))
@@ -101,4 +198,115 @@ public class StudentControllerWebMvcTest {
                 .andExpect(jsonPath("$.name").value("Ravenclaw"))
                 .andExpect(jsonPath("$.color").value("Blue"));
     }
+
+    @Test
+    void testGetStudentNamesByPrefix() throws Exception {
+        when(studentService.getStudentNamesByPrefix("he", 2)).thenReturn(List.of("Hannah", "Hermione"));
+
+        mockMvc.perform(get("/student/names").param("prefix", "he").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[1]").value("Hermione"));
+    }
+
+    @Test
+    void testGetStudentStats() throws Exception {
+        when(studentService.getStudentStats()).thenReturn(new StudentStats(2, 33, 16.5, 16, 17));
+
+        mockMvc.perform(get("/student/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(2))
+                .andExpect(jsonPath("$.averageAge").value(16.5))
+                .andExpect(jsonPath("$.maxAge").value(17));
+    }
+
+    @Test
+    void testGetAgeHistogram() throws Exception {
+        when(studentService.getAgeHistogram(5)).thenReturn(new AgeHistogram(5, 3,
+                List.of(new AgeBucket(15, 19, 2), new AgeBucket(20, 24, 1)), Instant.parse("2025-01-01T00:00:00Z")));
+
+        mockMvc.perform(get("/student/analytics/age-histogram").param("bucketWidth", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.buckets[0].fromAge").value(15))
+                .andExpect(jsonPath("$.buckets[1].count").value(1));
+    }
+
+    @Test
+    void testGetAgeHistogramWithInvalidWidth() throws Exception {
+        when(studentService.getAgeHistogram(0)).thenThrow(new IllegalArgumentException("Bucket width must be positive: 0"));
+
+        mockMvc.perform(get("/student/analytics/age-histogram").param("bucketWidth", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testBulkWriteStudents() throws Exception {
+        when(bulkWriteService.writeStudents(any())).thenReturn(new BulkWriteReport(1, 0, 1, null,
+                List.of(new BulkRowError(1, null, "ERROR: duplicate key value violates unique constraint \"uq_student_name\""))));
+
+        mockMvc.perform(post("/student/bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"name\":\"Harry\",\"age\":17}\n{\"name\":\"Harry\",\"age\":17}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.errors[0].row").value(1));
+    }
+
+    @Test
+    void testExportStudentsAsCsv() throws Exception {
+        doAnswer(invocation -> {
+            invocation.getArgument(1, OutputStream.class).write("id,name,age,faculty_id\n1,Harry,17,\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(studentExportService).exportStudents(eq(RowFormat.CSV), any());
+
+        MvcResult result = mockMvc.perform(get("/student/export").param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"students.csv\""))
+                .andExpect(content().string("id,name,age,faculty_id\n1,Harry,17,\n"));
+    }
+
+    @Test
+    void testExportStudentsInUnknownFormat() throws Exception {
+        mockMvc.perform(get("/student/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testImportStudentsStreamsProgress() throws Exception {
+        doAnswer(invocation -> {
+            invocation.getArgument(2, OutputStream.class).write("{\"created\":1}\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(bulkWriteService).importStudents(any(), eq(RowFormat.CSV), any());
+
+        MvcResult result = mockMvc.perform(post("/student/import")
+                        .contentType("text/csv")
+                        .content("name,age\nHarry,17\n"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"created\":1}\n"));
+    }
+
+    @Test
+    void testListStudentsByName() throws Exception {
+        when(studentService.getStudentsPage(ListingOrder.NAME, "abc", 1))
+                .thenReturn(new CursorPage<>(List.of(new StudentSummary(4L, "Hermione", 17, 1L)), "def"));
+
+        mockMvc.perform(get("/student/list").param("order", "name").param("cursor", "abc").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].name").value("Hermione"))
+                .andExpect(jsonPath("$.nextCursor").value("def"));
+    }
+
+    @Test
+    void testListStudentsWithForeignCursor() throws Exception {
+        when(studentService.getStudentsPage(ListingOrder.ID, "abc", 20))
+                .thenThrow(new IllegalArgumentException("Cursor does not belong to a listing by ID"));
+
+        mockMvc.perform(get("/student/list").param("cursor", "abc"))
+                .andExpect(status().isBadRequest());
+    }
 }
@@ -0,0 +1,70 @@
+package ru.hogwarts.school.index;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.hogwarts.school.dto.StudentAge;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.event.StudentSnapshot;
+
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StudentAgeIndexTest {
+
+    private final StudentAgeIndex index = new StudentAgeIndex(null, null);
+
+    private static StudentSnapshot student(long id, int age) {
+        return new StudentSnapshot(id, "Student " + id, age, null);
+    }
+
+    private long[] sortedIdsBetween(int min, int max) {
+        long[] ids = index.idsBetween(min, max);
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    @BeforeEach
+    void load() {
+        index.load(Stream.empty());
+    }
+
+    @Test
+    void testAnswerRangesAndFollowWrites() {
+        for (long id = 1; id <= 100; id++) {
+            index.onStudentChanged(new StudentChangedEvent(null, student(id, 16 + (int) (id % 4))));
+        }
+        assertThat(index.countBetween(16, 19)).isEqualTo(100);
+        assertThat(index.countBetween(17, 17)).isEqualTo(25);
+
+        index.onStudentChanged(new StudentChangedEvent(student(1, 17), student(1, 30)));
+        index.onStudentChanged(new StudentChangedEvent(student(5, 17), null));
+
+        assertThat(index.countBetween(17, 17)).isEqualTo(23);
+        assertThat(sortedIdsBetween(20, 40)).containsExactly(1);
+        assertThat(index.idsBetween(18, 16)).isEmpty();
+    }
+
+    @Test
+    void testDeclineWhileAnAgeIsOutsideTheDomain() {
+        index.onStudentChanged(new StudentChangedEvent(null, student(1, 17)));
+        index.onStudentChanged(new StudentChangedEvent(null, student(2, 1000)));
+        assertThat(index.idsBetween(0, 100)).isNull();
+        assertThat(index.countBetween(0, 100)).isEqualTo(-1);
+
+        index.onStudentChanged(new StudentChangedEvent(student(2, 1000), student(2, 18)));
+        assertThat(sortedIdsBetween(0, 100)).containsExactly(1, 2);
+    }
+
+    @Test
+    void testDeclineUntilLoaded() {
+        StudentAgeIndex unloaded = new StudentAgeIndex(null, null);
+        unloaded.onStudentChanged(new StudentChangedEvent(null, student(1, 17)));
+        assertThat(unloaded.idsBetween(0, 100)).isNull();
+        assertThat(unloaded.countBetween(0, 100)).isEqualTo(-1);
+
+        unloaded.load(Stream.of(new StudentAge(2L, 18)));
+        assertThat(unloaded.countBetween(0, 100)).isEqualTo(2);
+    }
+}
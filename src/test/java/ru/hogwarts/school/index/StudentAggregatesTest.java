@@ -0,0 +1,41 @@
+package ru.hogwarts.school.index;
+
+import org.junit.jupiter.api.Test;
+import ru.hogwarts.school.dto.AgeCount;
+import ru.hogwarts.school.dto.StudentStats;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.event.StudentSnapshot;
+import ru.hogwarts.school.repositories.StudentRepository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class StudentAggregatesTest {
+
+    private final StudentRepository studentRepository = mock(StudentRepository.class);
+    private final StudentAggregates aggregates = new StudentAggregates(studentRepository);
+
+    @Test
+    void testFollowWritesAfterReconcile() {
+        when(studentRepository.countByAge()).thenReturn(List.of(new AgeCount(16, 2L), new AgeCount(18, 1L)));
+        aggregates.reconcile();
+        assertThat(aggregates.getStats()).isEqualTo(new StudentStats(3, 50, 50.0 / 3, 16, 18));
+
+        aggregates.onStudentChanged(new StudentChangedEvent(new StudentSnapshot(7, "Neville", 18, null),
+                new StudentSnapshot(7, "Neville", 17, null)));
+        aggregates.onStudentChanged(new StudentChangedEvent(null, new StudentSnapshot(8, "Luna", 20, null)));
+
+        assertThat(aggregates.getStats()).isEqualTo(new StudentStats(4, 69, 69.0 / 4, 16, 20));
+    }
+
+    @Test
+    void testEmptyWhenLastStudentIsDeleted() {
+        aggregates.onStudentChanged(new StudentChangedEvent(null, new StudentSnapshot(1, "Harry", 17, null)));
+        aggregates.onStudentChanged(new StudentChangedEvent(new StudentSnapshot(1, "Harry", 17, null), null));
+
+        assertThat(aggregates.getStats()).isEqualTo(new StudentStats(0, 0, 0, null, null));
+    }
+}
@@ -0,0 +1,70 @@
+package ru.hogwarts.school.index;
+
+import org.junit.jupiter.api.Test;
+import ru.hogwarts.school.dto.AgeBucket;
+import ru.hogwarts.school.dto.AgeHistogram;
+import ru.hogwarts.school.dto.AgePercentile;
+import ru.hogwarts.school.dto.FacultyAgeStats;
+
+import java.time.Instant;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+public class StudentAnalyticsTest {
+
+    private final StudentAnalytics analytics = new StudentAnalytics(null, null);
+
+    private void load(int[] ages, long[] facultyIds) {
+        analytics.setSnapshot(new StudentAnalytics.Snapshot(ages, facultyIds, Instant.EPOCH));
+    }
+
+    @Test
+    void testComputeHistogramPercentilesAndFacultyGroups() {
+        load(new int[]{16, 17, 17, 18, 24}, new long[]{1, 1, 2, StudentAnalytics.NO_FACULTY, 2});
+
+        AgeHistogram histogram = analytics.histogram(5);
+        assertThat(histogram.total()).isEqualTo(5);
+        assertThat(histogram.buckets()).containsExactly(
+                new AgeBucket(15, 19, 4), new AgeBucket(20, 24, 1));
+
+        assertThat(analytics.percentiles(0, 50, 80, 100)).containsExactly(
+                new AgePercentile(0, 16), new AgePercentile(50, 17), new AgePercentile(80, 18), new AgePercentile(100, 24));
+
+        assertThat(analytics.byFaculty()).containsExactly(
+                new FacultyAgeStats(1L, 2, 16.5, 16, 17),
+                new FacultyAgeStats(2L, 2, 20.5, 17, 24),
+                new FacultyAgeStats(null, 1, 18, 18, 18));
+    }
+
+    @Test
+    void testParallelScanMatchesSequentialResult() {
+        int size = StudentAnalytics.PARALLEL_THRESHOLD * 4 + 7;
+        int[] ages = new int[size];
+        long[] facultyIds = new long[size];
+        long[] countsByFaculty = new long[4];
+        Random random = new Random(7);
+        for (int i = 0; i < size; i++) {
+            ages[i] = 11 + random.nextInt(10);
+            facultyIds[i] = random.nextInt(4);
+            countsByFaculty[(int) facultyIds[i]]++;
+        }
+        load(ages, facultyIds);
+
+        assertThat(analytics.histogram(1).buckets().stream().mapToLong(AgeBucket::count).sum()).isEqualTo(size);
+        assertThat(analytics.byFaculty()).extracting(FacultyAgeStats::count)
+                .containsExactly(countsByFaculty[1], countsByFaculty[2], countsByFaculty[3], countsByFaculty[0]);
+    }
+
+    @Test
+    void testRejectInvalidArguments() {
+        load(new int[]{16, 1_000_000}, new long[]{1, 1});
+
+        assertThatIllegalArgumentException().isThrownBy(() -> analytics.histogram(0));
+        assertThatIllegalArgumentException().isThrownBy(() -> analytics.histogram(1));
+        assertThatIllegalArgumentException().isThrownBy(() -> analytics.percentiles(101));
+        assertThat(analytics.percentiles(50, 100)).containsExactly(
+                new AgePercentile(50, 16), new AgePercentile(100, 1_000_000));
+    }
+}
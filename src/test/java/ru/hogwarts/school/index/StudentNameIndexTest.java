@@ -0,0 +1,41 @@
+package ru.hogwarts.school.index;
+
+import org.junit.jupiter.api.Test;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.event.StudentSnapshot;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StudentNameIndexTest {
+
+    private final StudentNameIndex index = new StudentNameIndex(null, null);
+
+    private void add(long id, String name) {
+        index.onStudentChanged(new StudentChangedEvent(null, new StudentSnapshot(id, name, 17, null)));
+    }
+
+    @Test
+    void testFindNamesByPrefixIgnoringCase() {
+        add(1, "Hermione");
+        add(2, "harry");
+        add(3, "Hannah");
+        add(4, "Draco");
+
+        assertThat(index.findByPrefix("HA", 10)).containsExactly("Hannah", "harry");
+        assertThat(index.findByPrefix("h", 2)).containsExactly("Hannah", "harry");
+        assertThat(index.findByPrefix("x", 10)).isEmpty();
+    }
+
+    @Test
+    void testKeepDuplicateNamesAndFollowRenamesAndDeletes() {
+        add(1, "Ron");
+        add(2, "Ron");
+        index.onStudentChanged(new StudentChangedEvent(new StudentSnapshot(1, "Ron", 17, null),
+                new StudentSnapshot(1, "Ronald", 17, null)));
+        index.onStudentChanged(new StudentChangedEvent(new StudentSnapshot(2, "Ron", 17, null), null));
+
+        assertThat(index.findByPrefix("ron", 10)).isEqualTo(List.of("Ronald"));
+    }
+}
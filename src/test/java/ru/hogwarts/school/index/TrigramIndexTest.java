@@ -0,0 +1,83 @@
+package ru.hogwarts.school.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TrigramIndexTest {
+
+    @Test
+    void testFindNamesDespiteTyposAndRankCloserMatchesFirst() {
+        TrigramIndex index = new TrigramIndex();
+        index.put(1, "Harry Potter");
+        index.put(2, "Hermione Granger");
+        index.put(3, "Harry");
+        index.put(4, "Ron Weasley");
+
+        assertThat(index.search("Hary", 10, 0.5)).extracting(TrigramIndex.Match::id).containsExactly(3L, 1L);
+        assertThat(index.search("HERMOINE", 10, 0.5)).extracting(TrigramIndex.Match::id).containsExactly(2L);
+        assertThat(index.search("weasl", 10, 0.5)).extracting(TrigramIndex.Match::id).containsExactly(4L);
+        assertThat(index.search("Draco", 10, 0.5)).isEmpty();
+        assertThat(index.search("Harry", 1, 0.5)).extracting(TrigramIndex.Match::id).containsExactly(3L);
+    }
+
+    @Test
+    void testReflectReplacedAndRemovedTexts() {
+        TrigramIndex index = new TrigramIndex();
+        index.put(1, "Luna");
+        index.put(1, "Ginny");
+        index.put(2, "Neville");
+        index.remove(2);
+
+        assertThat(index.search("Luna", 10, 0.5)).isEmpty();
+        assertThat(index.search("Ginny", 10, 0.5)).extracting(TrigramIndex.Match::text).containsExactly("Ginny");
+        assertThat(index.search("Neville", 10, 0.5)).isEmpty();
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    void testPrunedSearchMatchesFullScanAcrossCompactions() {
+        TrigramIndex index = new TrigramIndex();
+        Map<Long, String> expected = new HashMap<>();
+        Random random = new Random(42);
+        String[] syllables = {"ha", "ry", "po", "ter", "her", "mi", "one", "ron", "lu", "na"};
+        for (int i = 0; i < 20_000; i++) {
+            long id = random.nextInt(3_000);
+            if (random.nextInt(4) == 0) {
+                index.remove(id);
+                expected.remove(id);
+            } else {
+                StringBuilder name = new StringBuilder();
+                for (int s = random.nextInt(4) + 1; s > 0; s--) {
+                    name.append(syllables[random.nextInt(syllables.length)]);
+                }
+                index.put(id, name.toString());
+                expected.put(id, name.toString());
+            }
+        }
+
+        for (String query : List.of("harry", "ron", "lunapo", "miter")) {
+            long[] queryTrigrams = TrigramIndex.trigrams(query, true);
+            List<Long> scanned = new ArrayList<>();
+            expected.forEach((id, name) -> {
+                long[] nameTrigrams = TrigramIndex.trigrams(name, false);
+                long shared = Arrays.stream(queryTrigrams)
+                        .filter(t -> Arrays.binarySearch(nameTrigrams, t) >= 0)
+                        .count();
+                if (shared * 2 >= queryTrigrams.length) {
+                    scanned.add(id);
+                }
+            });
+            assertThat(index.search(query, 3_000, 0.5))
+                    .extracting(TrigramIndex.Match::id)
+                    .containsExactlyInAnyOrderElementsOf(scanned);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIOException;
+
+public class AvatarRenditionServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path writeImage(int width, int height) throws IOException {
+        Path file = tempDir.resolve("original.png");
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", file.toFile());
+        return file;
+    }
+
+    @Test
+    void testRenderConfiguredWidthsFromSubsampledDecode() throws IOException {
+        AvatarRenditionService service = new AvatarRenditionService(new int[]{48, 100}, 40_000_000);
+
+        List<AvatarRenditionService.Rendition> renditions = service.render(writeImage(2000, 1000), "png");
+
+        assertThat(renditions).extracting(AvatarRenditionService.Rendition::width).containsExactly(100, 48);
+        assertThat(renditions.get(0).height()).isEqualTo(50);
+        assertThat(AvatarRenditionService.subsampling(2000, 100)).isEqualTo(10);
+        assertThat(AvatarRenditionService.subsampling(150, 100)).isEqualTo(1);
+    }
+
+    @Test
+    void testRejectImagesAboveThePixelLimit() throws IOException {
+        AvatarRenditionService service = new AvatarRenditionService(new int[]{48}, 1_000);
+
+        Path image = writeImage(100, 100);
+
+        assertThatIOException().isThrownBy(() -> service.render(image, "png"));
+    }
+}
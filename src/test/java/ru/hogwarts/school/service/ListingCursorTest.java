@@ -0,0 +1,54 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.Test;
+import ru.hogwarts.school.dto.CursorPage;
+import ru.hogwarts.school.dto.FacultySummary;
+import ru.hogwarts.school.dto.ListingOrder;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+public class ListingCursorTest {
+
+    @Test
+    void testRoundTripNamesWithSeparators() {
+        ListingCursor cursor = new ListingCursor(ListingOrder.NAME, 42, "Potter: Harry");
+
+        assertThat(ListingCursor.decode(cursor.encode(), ListingOrder.NAME)).isEqualTo(cursor);
+    }
+
+    @Test
+    void testRejectCursorsOfAnotherOrderOrMalformed() {
+        String byId = new ListingCursor(ListingOrder.ID, 42, null).encode();
+
+        assertThatIllegalArgumentException().isThrownBy(() -> ListingCursor.decode(byId, ListingOrder.NAME));
+        assertThatIllegalArgumentException().isThrownBy(() -> ListingCursor.decode("not base64!", ListingOrder.ID));
+    }
+
+    @Test
+    void testPointNextCursorAtLastRowOfFullPage() {
+        List<FacultySummary> rows = List.of(new FacultySummary(3L, "Gryffindor", "red"),
+                new FacultySummary(1L, "Hufflepuff", "yellow"), new FacultySummary(2L, "Ravenclaw", "blue"));
+
+        CursorPage<FacultySummary> page = ListingCursor.page(rows, 2, ListingOrder.NAME, FacultySummary::id, FacultySummary::name);
+
+        assertThat(page.items()).hasSize(2);
+        assertThat(ListingCursor.decode(page.nextCursor(), ListingOrder.NAME))
+                .isEqualTo(new ListingCursor(ListingOrder.NAME, 1, "Hufflepuff"));
+        assertThat(ListingCursor.page(rows, 3, ListingOrder.NAME, FacultySummary::id, FacultySummary::name).nextCursor())
+                .isNull();
+    }
+
+    @Test
+    void testPointNextCursorAtEmptyNameForRowWithoutName() {
+        List<FacultySummary> rows = List.of(new FacultySummary(5L, null, "green"),
+                new FacultySummary(3L, "Gryffindor", "red"));
+
+        CursorPage<FacultySummary> page = ListingCursor.page(rows, 1, ListingOrder.NAME, FacultySummary::id, FacultySummary::name);
+
+        assertThat(ListingCursor.decode(page.nextCursor(), ListingOrder.NAME))
+                .isEqualTo(new ListingCursor(ListingOrder.NAME, 5, ""));
+    }
+}
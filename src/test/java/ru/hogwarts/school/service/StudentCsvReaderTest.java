@@ -0,0 +1,45 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.Test;
+import ru.hogwarts.school.dto.BulkStudent;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatIOException;
+
+public class StudentCsvReaderTest {
+
+    private static StudentCsvReader reader(String csv) throws IOException {
+        return new StudentCsvReader(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void testReadQuotedFieldsAndOptionalColumns() throws IOException {
+        try (StudentCsvReader reader = reader("\uFEFFid,Name,age,faculty_id,faculty\r\n"
+                + ",\"Potter, Harry\",17,,Gryffindor\r\n"
+                + "\n"
+                + "7,\"Luna \"\"Loony\"\"\nLovegood\",16,3,\n")) {
+            assertThat(reader.hasNext()).isTrue();
+            assertThat(reader.next()).isEqualTo(new BulkStudent(null, "Potter, Harry", 17, null, "Gryffindor"));
+            assertThat(reader.next()).isEqualTo(new BulkStudent(7L, "Luna \"Loony\"\nLovegood", 16, 3L, null));
+            assertThat(reader.hasNext()).isFalse();
+        }
+    }
+
+    @Test
+    void testSkipPastMalformedRows() throws IOException {
+        try (StudentCsvReader reader = reader("name,age\nHarry,old\nRon,17\n")) {
+            assertThatIllegalArgumentException().isThrownBy(reader::next);
+            assertThat(reader.next()).isEqualTo(new BulkStudent(null, "Ron", 17, null, null));
+        }
+    }
+
+    @Test
+    void testRejectHeaderWithoutRequiredColumns() {
+        assertThatIOException().isThrownBy(() -> reader("id,name\n1,Harry\n"));
+    }
+}
@@ -0,0 +1,16 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StudentExportServiceTest {
+
+    @Test
+    void testQuoteCsvFieldsOnlyWhenNeeded() {
+        assertThat(StudentExportService.csvField("Harry Potter")).isEqualTo("Harry Potter");
+        assertThat(StudentExportService.csvField("Potter, Harry")).isEqualTo("\"Potter, Harry\"");
+        assertThat(StudentExportService.csvField("The \"Chosen\" One")).isEqualTo("\"The \"\"Chosen\"\" One\"");
+        assertThat(StudentExportService.csvField(null)).isEmpty();
+    }
+}
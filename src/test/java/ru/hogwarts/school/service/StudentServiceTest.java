@@ -0,0 +1,141 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import ru.hogwarts.school.dto.BatchLookup;
+import ru.hogwarts.school.dto.StudentStats;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.event.StudentSnapshot;
+import ru.hogwarts.school.index.StudentAgeIndex;
+import ru.hogwarts.school.index.StudentAggregates;
+import ru.hogwarts.school.index.StudentAnalytics;
+import ru.hogwarts.school.index.StudentNameIndex;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repositories.StudentRepository;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class StudentServiceTest {
+
+    @Mock
+    private StudentRepository studentRepository;
+
+    @Mock
+    private StudentNameIndex studentNameIndex;
+
+    @Mock
+    private StudentAggregates studentAggregates;
+
+    @Mock
+    private StudentAgeIndex studentAgeIndex;
+
+    @Mock
+    private StudentAnalytics studentAnalytics;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private StudentService studentService;
+
+    @Test
+    void testGetStudentsByAgeQueriesByAge() {
+        when(studentRepository.findByAge(17)).thenReturn(List.of(new Student(1L, "Harry", 17)));
+
+        assertThat(studentService.getStudentsByAge(17)).extracting(Student::getName).containsExactly("Harry");
+        verify(studentRepository, never()).findAll();
+    }
+
+    @Test
+    void testGetStudentNamesStartingWithAUsesNameIndex() {
+        when(studentNameIndex.findByPrefix("А", Integer.MAX_VALUE)).thenReturn(List.of("Анна", "артём"));
+
+        assertThat(studentService.getStudentNamesStartingWithA()).containsExactly("АННА", "АРТЁМ");
+        verify(studentRepository, never()).findAll();
+    }
+
+    @Test
+    void testCountAndAverageAgeComeFromAggregates() {
+        when(studentAggregates.getStats()).thenReturn(new StudentStats(4, 70, 17.5, 16, 19));
+
+        assertThat(studentService.getStudentCount()).isEqualTo(4);
+        assertThat(studentService.getAverageStudentAge()).isEqualTo(17.5);
+        assertThat(studentService.getAverageAge()).isEqualTo(17.5);
+        verifyNoInteractions(studentRepository);
+    }
+
+    @Test
+    void testGetStudentsByAgeRangeLoadsIndexedIds() {
+        when(studentAgeIndex.idsBetween(16, 17)).thenReturn(new long[]{3, 5});
+        when(studentRepository.findAllById(List.of(3L, 5L)))
+                .thenReturn(List.of(new Student(3L, "Luna", 16), new Student(5L, "Ginny", 17)));
+
+        assertThat(studentService.getStudentsByAgeRange(16, 17)).extracting(Student::getId).containsExactly(3L, 5L);
+        verify(studentRepository, never()).findByAgeBetween(anyInt(), anyInt());
+    }
+
+    @Test
+    void testGetStudentsByAgeRangeFallsBackToQuery() {
+        when(studentAgeIndex.idsBetween(16, 17)).thenReturn(null);
+        when(studentRepository.findByAgeBetween(16, 17)).thenReturn(List.of(new Student(3L, "Luna", 16)));
+
+        assertThat(studentService.getStudentsByAgeRange(16, 17)).extracting(Student::getId).containsExactly(3L);
+    }
+
+    @Test
+    void testFindStudentIsCachedUntilTheStudentChanges() {
+        ReflectionTestUtils.setField(studentService, "cacheMaxEntities", 100L);
+        ReflectionTestUtils.setField(studentService, "cacheTimeToLive", Duration.ofMinutes(1));
+        studentService.createStudentCache();
+        when(studentRepository.findById(1L)).thenReturn(Optional.of(new Student(1L, "Harry", 17)));
+
+        studentService.findStudent(1L);
+        studentService.findStudent(1L);
+        verify(studentRepository, times(1)).findById(1L);
+
+        studentService.onStudentChanged(new StudentChangedEvent(
+                new StudentSnapshot(1L, "Harry", 17, null), new StudentSnapshot(1L, "Harry", 18, null)));
+        studentService.findStudent(1L);
+        verify(studentRepository, times(2)).findById(1L);
+        assertThat(studentService.getStudentCacheStats().hits()).isEqualTo(1);
+    }
+
+    @Test
+    void testGetStudentsKeepsRequestOrderAndReportsMissingIds() {
+        when(studentRepository.findAllWithFacultyByIdIn(List.of(5L, 3L, 9L)))
+                .thenReturn(List.of(new Student(3L, "Luna", 16), new Student(5L, "Ginny", 17)));
+
+        BatchLookup<Student> students = studentService.getStudents(List.of(5L, 3L, 9L, 5L));
+
+        assertThat(students.items()).extracting(Student::getId).containsExactly(5L, 3L);
+        assertThat(students.missing()).containsExactly(9L);
+    }
+
+    @Test
+    void testAddStudentAlwaysInserts() {
+        Student body = new Student(3L, "Luna", 16);
+        body.setVersion(2L);
+        when(studentRepository.save(body)).thenAnswer(invocation -> {
+            Student student = invocation.getArgument(0);
+            assertThat(student.getId()).isZero();
+            assertThat(student.getVersion()).isNull();
+            student.setId(7L);
+            return student;
+        });
+
+        studentService.addStudent(body);
+
+        verify(eventPublisher).publishEvent(new StudentChangedEvent(null, new StudentSnapshot(7L, "Luna", 16, null)));
+    }
+}
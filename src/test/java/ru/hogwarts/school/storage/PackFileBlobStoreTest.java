@@ -0,0 +1,92 @@
+package ru.hogwarts.school.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PackFileBlobStoreTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void testReadBlobsBackAfterRestart() throws IOException {
+        PackFileBlobStore store = new PackFileBlobStore(root.toString(), 1024);
+        String first = store.put(bytes("first"));
+        Path stagingFile = store.createStagingFile();
+        Files.write(stagingFile, bytes("second"));
+        String second = store.putFile(stagingFile);
+        store.close();
+
+        PackFileBlobStore reopened = new PackFileBlobStore(root.toString(), 1024);
+        assertThat(reopened.read(first)).isEqualTo(bytes("first"));
+        assertThat(reopened.read(second)).isEqualTo(bytes("second"));
+        assertThat(reopened.locate(second)).isEqualTo(new BlobRegion(root.resolve("packs/pack-00001.dat"), 5, 6));
+        assertThat(stagingFile).doesNotExist();
+        reopened.close();
+    }
+
+    @Test
+    void testStartNewPackWhenFull() throws IOException {
+        PackFileBlobStore store = new PackFileBlobStore(root.toString(), 8);
+        store.put(bytes("12345"));
+        String key = store.put(bytes("67890"));
+
+        assertThat(store.locate(key).file()).isEqualTo(root.resolve("packs/pack-00002.dat"));
+        assertThat(store.read(key)).isEqualTo(bytes("67890"));
+        store.close();
+    }
+
+    @Test
+    void testDeletedBlobStaysDeletedAfterRestart() throws IOException {
+        PackFileBlobStore store = new PackFileBlobStore(root.toString(), 1024);
+        String key = store.put(bytes("gone"));
+        store.delete(key);
+        store.close();
+
+        PackFileBlobStore reopened = new PackFileBlobStore(root.toString(), 1024);
+        assertThat(reopened.exists(key)).isFalse();
+        assertThatThrownBy(() -> reopened.read(key)).isInstanceOf(NoSuchFileException.class);
+        reopened.close();
+    }
+
+    @Test
+    void testKeepBlobsStoredAfterDamagedIndexLine() throws IOException {
+        PackFileBlobStore store = new PackFileBlobStore(root.toString(), 1024);
+        String first = store.put(bytes("first"));
+        store.close();
+        Files.writeString(root.resolve("packs/index.log"), "P 12ab", StandardOpenOption.APPEND);
+
+        PackFileBlobStore reopened = new PackFileBlobStore(root.toString(), 1024);
+        String second = reopened.put(bytes("second"));
+        reopened.close();
+
+        PackFileBlobStore again = new PackFileBlobStore(root.toString(), 1024);
+        assertThat(again.read(first)).isEqualTo(bytes("first"));
+        assertThat(again.read(second)).isEqualTo(bytes("second"));
+        again.close();
+    }
+
+    @Test
+    void testImportBlobsOfShardedStore() throws IOException {
+        String key = new ShardedBlobStore(root.toString()).put(bytes("loose"));
+
+        PackFileBlobStore store = new PackFileBlobStore(root.toString(), 1024);
+        assertThat(store.read(key)).isEqualTo(bytes("loose"));
+        assertThat(root.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key)).doesNotExist();
+        store.close();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}